@@ -584,6 +584,14 @@ public final class UUID {
         most |= ((long) uuid[8] & 0xFF);
         return most;
     }
+    /**
+     * 
+     * @return the 2 bytes (version and highest timestamp byte) not part of the most and least
+     *         significant bits, so that the 3 values identify this UUID without copy
+     */
+    public int getExtraBits() {
+        return ((uuid[5] & 0xFF) << 8) | (uuid[11] & 0xFF);
+    }
     /**
      * 
      * @return a UUID compatible with Java.Util package implementation
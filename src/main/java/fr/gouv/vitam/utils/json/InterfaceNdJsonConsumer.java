@@ -0,0 +1,52 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Consumer of the lines of a NdJsonPipeline, always called from the thread running the pipeline
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+public interface InterfaceNdJsonConsumer {
+    /**
+     *
+     * @param lineNumber
+     *            starting from 1
+     * @param node
+     *            the parsed line
+     * @throws InvalidParseOperationException
+     *             to stop the pipeline
+     */
+    public void accept(long lineNumber, JsonNode node) throws InvalidParseOperationException;
+
+    /**
+     * Called for a line that is not valid Json, the pipeline going on with the next lines
+     *
+     * @param lineNumber
+     *            starting from 1
+     * @param error
+     * @throws InvalidParseOperationException
+     *             to stop the pipeline
+     */
+    public void error(long lineNumber, InvalidParseOperationException error) throws InvalidParseOperationException;
+}
@@ -0,0 +1,193 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+/**
+ * Bounded pool of serialization buffers shared by all threads: the Jackson buffers (encoding,
+ * text and concatenation buffers) and one output buffer.
+ *
+ * Jackson recycles its buffers per thread, which is ineffective when serializations are spread
+ * over many short-lived or pooled threads. Here the buffers are borrowed for the duration of one
+ * JsonHandler or XmlHandler call only, whatever the thread, and given back at its end. At most
+ * maximumPooled sets of buffers are kept, the others being left to the garbage collector. The
+ * counters allow to check the efficiency of the pool.
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+public final class JsonBufferPool {
+    /**
+     * Default maximum number of pooled buffer sets
+     */
+    public static final int DEFAULT_MAXIMUM_POOLED = 64;
+
+    /**
+     * Buffers borrowed by the current call of the thread (not a per thread cache: it is always
+     * cleared at the end of the call)
+     */
+    private static final ThreadLocal<Buffers> CURRENT = new ThreadLocal<Buffers>();
+
+    private final ArrayBlockingQueue<Buffers> pool;
+
+    private final int maximumPooled;
+
+    private final AtomicInteger inUseCount = new AtomicInteger();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong dropCount = new AtomicLong();
+
+    /**
+     *
+     * @param maximumPooled
+     *            maximum number of buffer sets kept between calls
+     * @throws IllegalArgumentException
+     *             if maximumPooled is not positive
+     */
+    public JsonBufferPool(final int maximumPooled) {
+        if (maximumPooled <= 0) {
+            throw new IllegalArgumentException("maximumPooled must be positive");
+        }
+        this.maximumPooled = maximumPooled;
+        pool = new ArrayBlockingQueue<Buffers>(maximumPooled);
+    }
+
+    /**
+     * Borrows a set of buffers for the current call, to be released in a finally block
+     *
+     * @return the buffers
+     */
+    Buffers acquire() {
+        Buffers buffers = pool.poll();
+        if (buffers == null) {
+            missCount.incrementAndGet();
+            buffers = new Buffers();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        inUseCount.incrementAndGet();
+        buffers.previous = CURRENT.get();
+        CURRENT.set(buffers);
+        return buffers;
+    }
+
+    /**
+     * Gives back the buffers, dropping them if the pool is full
+     *
+     * @param buffers
+     */
+    void release(final Buffers buffers) {
+        if (buffers.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(buffers.previous);
+            buffers.previous = null;
+        }
+        inUseCount.decrementAndGet();
+        buffers.output.reset();
+        if (!pool.offer(buffers)) {
+            dropCount.incrementAndGet();
+        }
+    }
+
+    /**
+     *
+     * @return the BufferRecycler borrowed by the current call of the thread, or null
+     */
+    static BufferRecycler currentRecycler() {
+        final Buffers buffers = CURRENT.get();
+        return buffers == null ? null : buffers.recycler;
+    }
+
+    /**
+     *
+     * @return the maximum number of buffer sets kept between calls
+     */
+    public int getMaximumPooled() {
+        return maximumPooled;
+    }
+
+    /**
+     *
+     * @return the number of buffer sets currently pooled
+     */
+    public int getPooledCount() {
+        return pool.size();
+    }
+
+    /**
+     *
+     * @return the number of buffer sets currently borrowed
+     */
+    public int getInUseCount() {
+        return inUseCount.get();
+    }
+
+    /**
+     *
+     * @return the number of calls that reused pooled buffers
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     *
+     * @return the number of calls that allocated new buffers
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     *
+     * @return the number of buffer sets dropped because the pool was full
+     */
+    public long getDropCount() {
+        return dropCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "JsonBufferPool{maximumPooled=" + maximumPooled + ", pooled=" + getPooledCount() + ", inUse="
+                + getInUseCount() + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount() + ", dropCount="
+                + getDropCount() + "}";
+    }
+
+    /**
+     * Buffers of one call
+     */
+    static final class Buffers {
+        final BufferRecycler recycler = new BufferRecycler();
+        /**
+         * Output buffer, keeping its current block between calls
+         */
+        final ByteArrayBuilder output = new ByteArrayBuilder(recycler);
+
+        private Buffers previous;
+    }
+}
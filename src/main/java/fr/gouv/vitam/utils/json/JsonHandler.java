@@ -19,22 +19,35 @@ package fr.gouv.vitam.utils.json;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -55,32 +68,96 @@ public final class JsonHandler {
     /**
      * Default JsonFactory
      */
-    private static final JsonFactory JSONFACTORY = new JsonFactory();
+    private static final JsonFactory JSONFACTORY = new PooledJsonFactory();
+    /**
+     * Serialization buffers shared by JsonHandler and XmlHandler
+     */
+    private static final JsonBufferPool BUFFER_POOL = new JsonBufferPool(JsonBufferPool.DEFAULT_MAXIMUM_POOLED);
     /**
      * Default ObjectMapper
      */
     private static final ObjectMapper OBJECT_MAPPER;
 
     static {
-        OBJECT_MAPPER = new ObjectMapper(JSONFACTORY);
-        OBJECT_MAPPER.registerModule(new JodaModule());
-        OBJECT_MAPPER.setPropertyNamingStrategy(PropertyNamingStrategy.PASCAL_CASE_TO_CAMEL_CASE);
-        OBJECT_MAPPER.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-        OBJECT_MAPPER.configure(SerializationFeature.INDENT_OUTPUT, true);
-        OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
-        OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        OBJECT_MAPPER.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
-        OBJECT_MAPPER.configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false);
-        OBJECT_MAPPER.configure(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED, false);
-        OBJECT_MAPPER.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-        OBJECT_MAPPER.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
-        OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        OBJECT_MAPPER.configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, true);
+        OBJECT_MAPPER = configure(new ObjectMapper(JSONFACTORY));
+    }
+    /**
+     * Compact ObjectMapper: same configuration but neither indented nor escaping non ASCII
+     * characters, written as raw UTF-8, and not closing the target stream
+     */
+    private static final ObjectMapper COMPACT_MAPPER;
+    /**
+     * Compact ObjectWriter
+     */
+    private static final ObjectWriter COMPACT_WRITER;
+
+    static {
+        COMPACT_MAPPER = OBJECT_MAPPER.copy();
+        COMPACT_MAPPER.configure(SerializationFeature.INDENT_OUTPUT, false);
+        COMPACT_MAPPER.configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, false);
+        COMPACT_MAPPER.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        COMPACT_WRITER = COMPACT_MAPPER.writer();
+    }
+    /**
+     * Smile (binary Json) ObjectMapper, with the same configuration
+     */
+    private static final ObjectMapper SMILE_MAPPER;
+
+    static {
+        SMILE_MAPPER = configure(new ObjectMapper(new PooledSmileFactory()));
+        SMILE_MAPPER.configure(SerializationFeature.INDENT_OUTPUT, false);
+    }
+    /**
+     * Readers and writers by type of the default ObjectMapper
+     */
+    private static final ObjectMapperCache CACHE = new ObjectMapperCache(OBJECT_MAPPER);
+    /**
+     * Writers by type of the compact ObjectMapper
+     */
+    private static final ObjectMapperCache COMPACT_CACHE = new ObjectMapperCache(COMPACT_MAPPER);
+    /**
+     * Readers and writers by type of the Smile ObjectMapper
+     */
+    private static final ObjectMapperCache SMILE_CACHE = new ObjectMapperCache(SMILE_MAPPER);
+    /**
+     * Reader of getMapFromString
+     */
+    private static final ObjectReader MAP_READER = CACHE.reader(CACHE.getType(new TypeReference<Map<String, Object>>() {
+    }));
+
+    /**
+     * Applies the common configuration
+     *
+     * @param mapper
+     * @return the mapper
+     */
+    private static final ObjectMapper configure(final ObjectMapper mapper) {
+        mapper.registerModule(new JodaModule());
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategy.PASCAL_CASE_TO_CAMEL_CASE);
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        mapper.configure(SerializationFeature.INDENT_OUTPUT, true);
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
+        mapper.configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false);
+        mapper.configure(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED, false);
+        mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, true);
+        return mapper;
     }
 
     private JsonHandler() {
     }
 
+    /**
+     * @return the pool of serialization buffers, shared with XmlHandler
+     */
+    public static JsonBufferPool getBufferPool() {
+        return BUFFER_POOL;
+    }
+
     /**
      * @return the current factory
      */
@@ -126,7 +203,7 @@ public final class JsonHandler {
     */
    public static final <T> T getFromString(final String value, final Class<T> clasz) throws InvalidParseOperationException {
        try {
-           return OBJECT_MAPPER.readValue(value, clasz);
+           return CACHE.reader(CACHE.getType(clasz)).readValue(value);
        } catch (IOException e) {
            throw new InvalidParseOperationException(e);
        }
@@ -147,6 +224,130 @@ public final class JsonHandler {
         }
     }
 
+    /**
+     *
+     * @param value
+     * @param offset
+     * @param length
+     * @return the jsonNode (ObjectNode or ArrayNode) of the given part of value
+     * @throws InvalidParseOperationException
+     *             if the given part is not exactly one valid document
+     */
+    public static final JsonNode getFromBytes(final byte[] value, final int offset, final int length)
+            throws InvalidParseOperationException {
+        try {
+            return readSingleTree(JSONFACTORY.createParser(value, offset, length));
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     *
+     * @param value
+     * @param format
+     *            encoding of value
+     * @return the jsonNode (ObjectNode or ArrayNode)
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonNode getFromBytes(final byte[] value, final JsonFormat format)
+            throws InvalidParseOperationException {
+        if (format == JsonFormat.JSON) {
+            return getFromBytes(value);
+        }
+        try {
+            return SMILE_MAPPER.readTree(value);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     *
+     * @param value
+     * @param clasz
+     * @param format
+     *            encoding of value
+     * @return the object of type clasz
+     * @throws InvalidParseOperationException
+     */
+    public static final <T> T getFromBytes(final byte[] value, final Class<T> clasz, final JsonFormat format)
+            throws InvalidParseOperationException {
+        final ObjectMapperCache cache = format == JsonFormat.JSON ? CACHE : SMILE_CACHE;
+        try {
+            return cache.reader(cache.getType(clasz)).readValue(value);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Reads the only document of the parser, then closes the parser
+     *
+     * @param parser
+     * @return the jsonNode (ObjectNode or ArrayNode)
+     * @throws IOException
+     * @throws InvalidParseOperationException
+     *             if there is some content after the document
+     */
+    private static final JsonNode readSingleTree(final JsonParser parser)
+            throws IOException, InvalidParseOperationException {
+        try {
+            final JsonNode node = OBJECT_MAPPER.readTree(parser);
+            if (parser.nextToken() != null) {
+                throw new InvalidParseOperationException("Unexpected content after the Json document");
+            }
+            return node;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer (heap or direct) without copying them into an
+     * intermediate String, the position of the buffer being moved to its limit
+     *
+     * @param buffer
+     *            containing exactly one document
+     * @return the jsonNode (ObjectNode or ArrayNode)
+     * @throws InvalidParseOperationException
+     *             if the buffer is not one valid document
+     */
+    public static final JsonNode getFromByteBuffer(final ByteBuffer buffer) throws InvalidParseOperationException {
+        try {
+            if (buffer.hasArray()) {
+                final JsonNode node = readSingleTree(JSONFACTORY.createParser(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+                buffer.position(buffer.limit());
+                return node;
+            }
+            return readSingleTree(JSONFACTORY.createParser(new ByteBufferInputStream(buffer)));
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Reads the document of the channel through the recycled buffers of the parser. The channel
+     * must contain exactly one document, since the parser reads ahead until its end. The channel
+     * is not closed.
+     *
+     * @param channel
+     * @return the jsonNode (ObjectNode or ArrayNode)
+     * @throws InvalidParseOperationException
+     *             if the channel does not contain one valid document
+     */
+    public static final JsonNode getFromChannel(final ReadableByteChannel channel)
+            throws InvalidParseOperationException {
+        try {
+            final JsonParser parser = JSONFACTORY.createParser(Channels.newInputStream(channel));
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return readSingleTree(parser);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
     /**
      *
      * @param object
@@ -154,12 +355,92 @@ public final class JsonHandler {
      * @throws InvalidParseOperationException
      */
     public static final String writeAsString(final Object object) throws InvalidParseOperationException {
+        final JsonBufferPool.Buffers buffers = BUFFER_POOL.acquire();
         try {
             return OBJECT_MAPPER.writeValueAsString(object);
         } catch (final JsonProcessingException e) {
             throw new InvalidParseOperationException(e);
+        } finally {
+            BUFFER_POOL.release(buffers);
+        }
+    }
+    /**
+     * Compact output: no indentation and raw UTF-8, without intermediate String
+     *
+     * @param object
+     * @return the compact Json representation of the object in UTF-8
+     * @throws InvalidParseOperationException
+     */
+    public static final byte[] writeAsBytes(final Object object) throws InvalidParseOperationException {
+        final JsonBufferPool.Buffers buffers = BUFFER_POOL.acquire();
+        try {
+            COMPACT_WRITER.writeValue(buffers.output, object);
+            return buffers.output.toByteArray();
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            BUFFER_POOL.release(buffers);
+        }
+    }
+
+    /**
+     *
+     * @param object
+     * @param format
+     *            encoding of the result, JSON being the compact output
+     * @return the representation of the object in the given format
+     * @throws InvalidParseOperationException
+     */
+    public static final byte[] writeAsBytes(final Object object, final JsonFormat format)
+            throws InvalidParseOperationException {
+        if (format == JsonFormat.JSON) {
+            return writeAsBytes(object);
+        }
+        final JsonBufferPool.Buffers buffers = BUFFER_POOL.acquire();
+        try {
+            SMILE_MAPPER.writeValue(buffers.output, object);
+            return buffers.output.toByteArray();
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            BUFFER_POOL.release(buffers);
+        }
+    }
+
+    /**
+     * Compact output: no indentation and raw UTF-8, written directly to the stream which is
+     * flushed but not closed. Only the recycler (encoding buffer) is borrowed from the pool,
+     * not the output buffer
+     *
+     * @param object
+     * @param outputStream
+     * @throws InvalidParseOperationException
+     */
+    public static final void writeTo(final Object object, final OutputStream outputStream)
+            throws InvalidParseOperationException {
+        final JsonBufferPool.Buffers buffers = BUFFER_POOL.acquire();
+        try {
+            COMPACT_WRITER.writeValue(outputStream, object);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            BUFFER_POOL.release(buffers);
         }
     }
+
+    /**
+     * Compact output: no indentation and raw UTF-8, written to the channel through the pooled
+     * buffers of the generator. The channel is not closed.
+     *
+     * @param object
+     * @param channel
+     * @throws InvalidParseOperationException
+     */
+    public static final void writeTo(final Object object, final WritableByteChannel channel)
+            throws InvalidParseOperationException {
+        writeTo(object, Channels.newOutputStream(channel));
+    }
+
     /**
     *
     * @param object
@@ -173,6 +454,221 @@ public final class JsonHandler {
            throw new InvalidParseOperationException(e);
        }
    }
+    /**
+     * Streaming API: the returned parser iterates over the tokens of the document without
+     * building it, and can bind the current value through readValueAs or readValueAsTree.
+     *
+     * @param inputStream
+     * @return a parser over the stream, to be closed by the caller (closing the stream)
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonParser createParser(final InputStream inputStream)
+            throws InvalidParseOperationException {
+        try {
+            return JSONFACTORY.createParser(inputStream);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Streaming API: the returned parser iterates over the tokens of the given part of value
+     * without building it, and can bind the current value through readValueAs or
+     * readValueAsTree.
+     *
+     * @param value
+     * @param offset
+     * @param length
+     * @return a parser over the bytes
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonParser createParser(final byte[] value, final int offset, final int length)
+            throws InvalidParseOperationException {
+        try {
+            return JSONFACTORY.createParser(value, offset, length);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Streaming API: the returned parser iterates over the tokens of the document without
+     * building it, and can bind the current value through readValueAs or readValueAsTree.
+     *
+     * @param reader
+     * @return a parser over the reader, to be closed by the caller (closing the reader)
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonParser createParser(final Reader reader) throws InvalidParseOperationException {
+        try {
+            return JSONFACTORY.createParser(reader);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Streaming API: the returned generator writes the document incrementally in UTF-8, objects
+     * being serialized through writeObject or writeTree
+     *
+     * @param outputStream
+     * @return a generator over the stream, to be closed by the caller (closing the stream)
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonGenerator createGenerator(final OutputStream outputStream)
+            throws InvalidParseOperationException {
+        try {
+            return JSONFACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Streaming API: the returned generator writes the document incrementally, objects being
+     * serialized through writeObject or writeTree
+     *
+     * @param writer
+     * @return a generator over the writer, to be closed by the caller (closing the writer)
+     * @throws InvalidParseOperationException
+     */
+    public static final JsonGenerator createGenerator(final Writer writer) throws InvalidParseOperationException {
+        try {
+            return JSONFACTORY.createGenerator(writer);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     * Calls the handler for each element of the top-level array of the stream, each element being
+     * bound separately so that only one element is in memory at a time. The stream is closed.
+     *
+     * @param inputStream
+     * @param handler
+     * @return the number of handled elements
+     * @throws InvalidParseOperationException
+     *             if the document is not a valid array or if the handler fails
+     */
+    public static final int forEachArrayElement(final InputStream inputStream,
+            final InterfaceJsonElementHandler<JsonNode> handler) throws InvalidParseOperationException {
+        return forEachArrayElement(createParser(inputStream), JsonNode.class, handler);
+    }
+
+    /**
+     * Calls the handler for each element of the top-level array of the stream, each element being
+     * bound separately to clasz so that only one element is in memory at a time. The stream is
+     * closed.
+     *
+     * @param inputStream
+     * @param clasz
+     * @param handler
+     * @return the number of handled elements
+     * @throws InvalidParseOperationException
+     *             if the document is not a valid array or if the handler fails
+     */
+    public static final <T> int forEachArrayElement(final InputStream inputStream, final Class<T> clasz,
+            final InterfaceJsonElementHandler<T> handler) throws InvalidParseOperationException {
+        return forEachArrayElement(createParser(inputStream), clasz, handler);
+    }
+
+    /**
+     * Calls the handler for each element of the top-level array of the reader, each element being
+     * bound separately to clasz so that only one element is in memory at a time. The reader is
+     * closed.
+     *
+     * @param reader
+     * @param clasz
+     * @param handler
+     * @return the number of handled elements
+     * @throws InvalidParseOperationException
+     *             if the document is not a valid array or if the handler fails
+     */
+    public static final <T> int forEachArrayElement(final Reader reader, final Class<T> clasz,
+            final InterfaceJsonElementHandler<T> handler) throws InvalidParseOperationException {
+        return forEachArrayElement(createParser(reader), clasz, handler);
+    }
+
+    private static final <T> int forEachArrayElement(final JsonParser parser, final Class<T> clasz,
+            final InterfaceJsonElementHandler<T> handler) throws InvalidParseOperationException {
+        final ObjectReader reader = CACHE.reader(CACHE.getType(clasz));
+        int count = 0;
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidParseOperationException("The document is not an array");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == null) {
+                    throw new InvalidParseOperationException("Unexpected end of array");
+                }
+                final T element = reader.readValue(parser);
+                handler.handle(element);
+                count++;
+            }
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            try {
+                parser.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Typed handle, created once per type and shared by all threads, avoiding the type
+     * resolution of each readValue
+     *
+     * @param clasz
+     * @return the reader of clasz
+     */
+    public static final ObjectReader reader(final Class<?> clasz) {
+        return CACHE.reader(CACHE.getType(clasz));
+    }
+
+    /**
+     * Typed handle for generic types, created once per type and shared by all threads. The
+     * TypeReference should be a constant of the caller.
+     *
+     * @param typeReference
+     * @return the reader of the type
+     */
+    public static final ObjectReader reader(final TypeReference<?> typeReference) {
+        return CACHE.reader(CACHE.getType(typeReference));
+    }
+
+    /**
+     * Typed handle, created once per type and shared by all threads
+     *
+     * @param type
+     * @return the reader of the type
+     */
+    public static final ObjectReader reader(final JavaType type) {
+        return CACHE.reader(type);
+    }
+
+    /**
+     * Typed handle (default indented output), created once per type and shared by all threads
+     *
+     * @param clasz
+     * @return the writer of clasz
+     */
+    public static final ObjectWriter writer(final Class<?> clasz) {
+        return CACHE.writer(CACHE.getType(clasz));
+    }
+
+    /**
+     * Typed handle (compact UTF-8 output), created once per type and shared by all threads
+     *
+     * @param clasz
+     * @return the compact writer of clasz
+     */
+    public static final ObjectWriter compactWriter(final Class<?> clasz) {
+        return COMPACT_CACHE.writer(COMPACT_CACHE.getType(clasz));
+    }
+
     /**
      * node should have only one property
      *
@@ -255,8 +751,7 @@ public final class JsonHandler {
         if (value != null && !value.isEmpty()) {
             Map<String, Object> info = null;
             try {
-                info = OBJECT_MAPPER.readValue(value, new TypeReference<Map<String, Object>>() {
-                });
+                info = MAP_READER.readValue(value);
             } catch (final JsonParseException e) {
                 throw new InvalidParseOperationException(e);
             } catch (final JsonMappingException e) {
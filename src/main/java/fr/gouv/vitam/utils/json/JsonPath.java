@@ -0,0 +1,230 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Compiled path expression, such as $.Title.lang[0], evaluated either against a JsonNode or
+ * directly against a streaming parser, so that a field can be extracted from raw bytes without
+ * building the tree.
+ *
+ * Supported steps are .name, ['name'] (or ["name"]) and [index]. A compiled path is immutable
+ * and can be shared between threads; evaluating it against a JsonNode allocates nothing.
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+public final class JsonPath {
+    private final String expression;
+    /**
+     * Field name of each step, null for an index step
+     */
+    private final String[] names;
+    /**
+     * Index of each step, -1 for a field step
+     */
+    private final int[] indexes;
+
+    private JsonPath(final String expression, final String[] names, final int[] indexes) {
+        this.expression = expression;
+        this.names = names;
+        this.indexes = indexes;
+    }
+
+    /**
+     *
+     * @param expression
+     *            such as $.Title.lang[0]
+     * @return the compiled path
+     * @throws InvalidParseOperationException
+     *             if the expression is not valid
+     */
+    public static final JsonPath compile(final String expression) throws InvalidParseOperationException {
+        if (expression == null || !expression.startsWith("$")) {
+            throw new InvalidParseOperationException("Path must start with $: " + expression);
+        }
+        final List<String> names = new ArrayList<String>();
+        final List<Integer> indexes = new ArrayList<Integer>();
+        final int length = expression.length();
+        int pos = 1;
+        while (pos < length) {
+            final char c = expression.charAt(pos);
+            if (c == '.') {
+                int end = pos + 1;
+                while (end < length && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == pos + 1) {
+                    throw new InvalidParseOperationException("Empty field name at " + pos + ": " + expression);
+                }
+                names.add(expression.substring(pos + 1, end));
+                indexes.add(-1);
+                pos = end;
+            } else if (c == '[') {
+                final int end = expression.indexOf(']', pos);
+                if (end < 0) {
+                    throw new InvalidParseOperationException("Unclosed [ at " + pos + ": " + expression);
+                }
+                final String step = expression.substring(pos + 1, end);
+                if (step.length() >= 2 && (step.charAt(0) == '\'' || step.charAt(0) == '"')
+                        && step.charAt(step.length() - 1) == step.charAt(0)) {
+                    names.add(step.substring(1, step.length() - 1));
+                    indexes.add(-1);
+                } else {
+                    final int index;
+                    try {
+                        index = Integer.parseInt(step);
+                    } catch (final NumberFormatException e) {
+                        throw new InvalidParseOperationException("Invalid index at " + pos + ": " + expression, e);
+                    }
+                    if (index < 0) {
+                        throw new InvalidParseOperationException("Negative index at " + pos + ": " + expression);
+                    }
+                    names.add(null);
+                    indexes.add(index);
+                }
+                pos = end + 1;
+            } else {
+                throw new InvalidParseOperationException("Unexpected character at " + pos + ": " + expression);
+            }
+        }
+        final int[] steps = new int[indexes.size()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = indexes.get(i);
+        }
+        return new JsonPath(expression, names.toArray(new String[names.size()]), steps);
+    }
+
+    /**
+     *
+     * @param root
+     * @return the selected node, or null if the path does not exist in root
+     */
+    public final JsonNode evaluate(final JsonNode root) {
+        JsonNode node = root;
+        for (int i = 0; i < names.length && node != null; i++) {
+            if (names[i] != null) {
+                node = node.get(names[i]);
+            } else {
+                node = node.get(indexes[i]);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Reads only the selected value from the parser, skipping without binding everything before
+     * it. The parser must be positioned before or at the start of the document, and is left
+     * positioned on the end of the selected value.
+     *
+     * @param parser
+     *            a parser created by JsonHandler
+     * @return the selected node, or null if the path does not exist in the document
+     * @throws InvalidParseOperationException
+     */
+    public final JsonNode evaluate(final JsonParser parser) throws InvalidParseOperationException {
+        try {
+            JsonToken token = parser.getCurrentToken();
+            if (token == null) {
+                token = parser.nextToken();
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] != null) {
+                    if (token != JsonToken.START_OBJECT || !seekField(parser, names[i])) {
+                        return null;
+                    }
+                } else if (token != JsonToken.START_ARRAY || !seekIndex(parser, indexes[i])) {
+                    return null;
+                }
+                token = parser.getCurrentToken();
+            }
+            if (token == null) {
+                return null;
+            }
+            return parser.readValueAsTree();
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     *
+     * @param value
+     *            the document in UTF-8
+     * @return the selected node, or null if the path does not exist in the document
+     * @throws InvalidParseOperationException
+     */
+    public final JsonNode evaluate(final byte[] value) throws InvalidParseOperationException {
+        final JsonParser parser = JsonHandler.createParser(new ByteArrayInputStream(value));
+        try {
+            return evaluate(parser);
+        } finally {
+            try {
+                parser.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Moves the parser, positioned on START_OBJECT, to the value of the field
+     */
+    private static final boolean seekField(final JsonParser parser, final String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String current = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals(current)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Moves the parser, positioned on START_ARRAY, to the element of the index
+     */
+    private static final boolean seekIndex(final JsonParser parser, final int index) throws IOException {
+        for (int i = 0;; i++) {
+            final JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return false;
+            }
+            if (i == index) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Lazy Json object over raw bytes: the offsets of the top-level fields are indexed once, without
+ * building any node, and a field value is only parsed (then kept) when it is accessed through
+ * get or path, as with an ObjectNode.
+ *
+ * The whole document is tokenized by the index, so that a syntax error is reported when the
+ * document is created and never by the accessors. The bytes must not be modified afterwards.
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+public class LazyJsonNode {
+    private final byte[] bytes;
+    /**
+     * Offset of each top-level field, in document order: the parser reports the position
+     * following the previous token (so possibly a separator before the field name), the value
+     * being found by valueOffset
+     */
+    private final Map<String, Integer> offsets = new LinkedHashMap<String, Integer>();
+    /**
+     * Values already parsed
+     */
+    private final Map<String, JsonNode> values = new HashMap<String, JsonNode>();
+
+    /**
+     *
+     * @param bytes
+     *            a Json object in UTF-8
+     * @throws InvalidParseOperationException
+     *             if bytes is not a valid Json object
+     */
+    public LazyJsonNode(final byte[] bytes) throws InvalidParseOperationException {
+        this.bytes = bytes;
+        final JsonParser parser = JsonHandler.createParser(bytes, 0, bytes.length);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidParseOperationException("The document is not an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                offsets.put(parser.getCurrentName(), (int) parser.getTokenLocation().getByteOffset());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+                throw new InvalidParseOperationException("Unexpected end of object");
+            }
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            try {
+                parser.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     *
+     * @param fieldName
+     * @return the value of the field, or null if there is no such field
+     */
+    public synchronized JsonNode get(final String fieldName) {
+        JsonNode value = values.get(fieldName);
+        if (value == null) {
+            final Integer offset = offsets.get(fieldName);
+            if (offset == null) {
+                return null;
+            }
+            value = parseValue(valueOffset(offset));
+            values.put(fieldName, value);
+        }
+        return value;
+    }
+
+    /**
+     * Parses the value starting at start, the rest of the document being ignored
+     *
+     * @param start
+     * @return the value
+     */
+    private JsonNode parseValue(final int start) {
+        try {
+            final JsonParser parser = JsonHandler.createParser(bytes, start, valueLength(start));
+            try {
+                parser.nextToken();
+                return parser.readValueAsTree();
+            } finally {
+                parser.close();
+            }
+        } catch (final InvalidParseOperationException e) {
+            // already validated by the index
+            throw new IllegalStateException(e);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Skips the separator, the field name (quoted or not, as already validated by the index) and
+     * the colon
+     *
+     * @param offset
+     *            of the field
+     * @return the offset of the value of the field
+     */
+    private int valueOffset(final int offset) {
+        int pos = skipBlanks(offset);
+        if (bytes[pos] == ',' || bytes[pos] == '{') {
+            pos = skipBlanks(pos + 1);
+        }
+        final byte quote = bytes[pos];
+        if (quote == '"' || quote == '\'') {
+            pos++;
+            while (bytes[pos] != quote) {
+                pos += bytes[pos] == '\\' ? 2 : 1;
+            }
+            pos++;
+        } else {
+            while (bytes[pos] != ':' && (bytes[pos] & 0xFF) > ' ') {
+                pos++;
+            }
+        }
+        pos = skipBlanks(pos);
+        // colon
+        return skipBlanks(pos + 1);
+    }
+
+    /**
+     * A root-level number must be followed by a blank for the parser, so its exact length is
+     * given, other values being delimited by themselves
+     *
+     * @param start
+     * @return the length to parse from start
+     */
+    private int valueLength(final int start) {
+        final byte first = bytes[start];
+        if (first != '-' && (first < '0' || first > '9')) {
+            return bytes.length - start;
+        }
+        int pos = start + 1;
+        while (pos < bytes.length && (bytes[pos] >= '0' && bytes[pos] <= '9' || bytes[pos] == '.'
+                || bytes[pos] == 'e' || bytes[pos] == 'E' || bytes[pos] == '+' || bytes[pos] == '-')) {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private int skipBlanks(final int offset) {
+        int pos = offset;
+        while ((bytes[pos] & 0xFF) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     *
+     * @param fieldName
+     * @return the value of the field, or a MissingNode if there is no such field
+     */
+    public JsonNode path(final String fieldName) {
+        final JsonNode value = get(fieldName);
+        return value == null ? MissingNode.getInstance() : value;
+    }
+
+    /**
+     *
+     * @param fieldName
+     * @return true if the object has this field
+     */
+    public boolean has(final String fieldName) {
+        return offsets.containsKey(fieldName);
+    }
+
+    /**
+     *
+     * @return the number of top-level fields
+     */
+    public int size() {
+        return offsets.size();
+    }
+
+    /**
+     *
+     * @return the top-level field names, in document order
+     */
+    public Iterator<String> fieldNames() {
+        return offsets.keySet().iterator();
+    }
+
+    /**
+     * Parses all fields not yet accessed
+     *
+     * @return the whole document as an ObjectNode
+     */
+    public ObjectNode toObjectNode() {
+        final ObjectNode node = JsonHandler.createObjectNode();
+        for (final String fieldName : offsets.keySet()) {
+            node.set(fieldName, get(fieldName));
+        }
+        return node;
+    }
+
+    /**
+     *
+     * @return the raw bytes of the document
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return toObjectNode().toString();
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Parallel parsing of newline-delimited Json (one document per line).
+ *
+ * The input is read by chunks split on the last newline of the buffer, each chunk being parsed by
+ * a fork/join pool while the next ones are read. At most maxInFlightChunks chunks are read but not
+ * yet delivered, so that the memory used stays bounded whatever the size of the input. Lines are
+ * delivered to the consumer from the calling thread, either in input order or as soon as their
+ * chunk is parsed. A line that is not valid Json is reported to the consumer without stopping the
+ * pipeline; blank lines are ignored.
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+public class NdJsonPipeline implements Closeable {
+    /**
+     * Default chunk size (1 MB)
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    private final int maxInFlightChunks;
+
+    private final boolean ordered;
+
+    /**
+     * Creates new NdJsonPipeline
+     *
+     * @param parallelism
+     *            number of parsing threads
+     * @param chunkSize
+     *            size of the chunks read (a longer line makes its chunk grow)
+     * @param maxInFlightChunks
+     *            maximum number of chunks read but not yet delivered
+     * @param ordered
+     *            true to deliver the lines in input order
+     * @throws IllegalArgumentException
+     *             if parallelism, chunkSize or maxInFlightChunks is not positive
+     */
+    public NdJsonPipeline(int parallelism, int chunkSize, int maxInFlightChunks, boolean ordered) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        if (maxInFlightChunks <= 0) {
+            throw new IllegalArgumentException("maxInFlightChunks must be positive");
+        }
+        pool = new ForkJoinPool(parallelism);
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = maxInFlightChunks;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Creates new ordered NdJsonPipeline using all processors, with DEFAULT_CHUNK_SIZE and 2
+     * chunks in flight per processor
+     */
+    public NdJsonPipeline() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE,
+                2 * Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     *
+     * @param file
+     * @param consumer
+     * @return the number of valid lines delivered
+     * @throws InvalidParseOperationException
+     *             if the file cannot be read or if the consumer stops the pipeline
+     */
+    public long process(File file, InterfaceNdJsonConsumer consumer) throws InvalidParseOperationException {
+        try (InputStream input = new FileInputStream(file)) {
+            return process(input, consumer);
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        }
+    }
+
+    /**
+     *
+     * @param input
+     *            read until its end but not closed
+     * @param consumer
+     * @return the number of valid lines delivered
+     * @throws InvalidParseOperationException
+     *             if the input cannot be read or if the consumer stops the pipeline
+     */
+    public long process(InputStream input, InterfaceNdJsonConsumer consumer) throws InvalidParseOperationException {
+        // the queue of a CompletionService keeps every completed chunk until taken, so it is only
+        // used when the chunks are taken from it
+        final CompletionService<ParsedChunk> completion = ordered ? null
+                : new ExecutorCompletionService<ParsedChunk>(pool);
+        final ArrayDeque<Future<ParsedChunk>> pending = new ArrayDeque<Future<ParsedChunk>>();
+        long valid = 0;
+        long lineNumber = 1;
+        byte[] buffer = new byte[chunkSize];
+        int filled = 0;
+        boolean eof = false;
+        try {
+            while (!eof) {
+                final int read = input.read(buffer, filled, buffer.length - filled);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    filled += read;
+                    if (filled < buffer.length) {
+                        continue;
+                    }
+                }
+                final int end = eof ? filled : lastNewline(buffer, filled) + 1;
+                if (end == 0) {
+                    if (!eof) {
+                        // one line longer than the buffer
+                        final byte[] larger = new byte[buffer.length * 2];
+                        System.arraycopy(buffer, 0, larger, 0, filled);
+                        buffer = larger;
+                    }
+                    continue;
+                }
+                final ParseTask task = new ParseTask(buffer, end, lineNumber);
+                lineNumber += countLines(buffer, end);
+                pending.add(ordered ? pool.submit(task) : completion.submit(task));
+                final byte[] next = new byte[Math.max(chunkSize, 2 * (filled - end))];
+                System.arraycopy(buffer, end, next, 0, filled - end);
+                filled -= end;
+                buffer = next;
+                while (pending.size() >= maxInFlightChunks) {
+                    valid += deliver(nextChunk(completion, pending), consumer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                valid += deliver(nextChunk(completion, pending), consumer);
+            }
+        } catch (final IOException e) {
+            throw new InvalidParseOperationException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidParseOperationException(e);
+        } catch (final ExecutionException e) {
+            throw new InvalidParseOperationException(e.getCause());
+        } finally {
+            for (final Future<ParsedChunk> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Waits for the next chunk to deliver, the oldest one if ordered
+     */
+    private ParsedChunk nextChunk(CompletionService<ParsedChunk> completion, ArrayDeque<Future<ParsedChunk>> pending)
+            throws InterruptedException, ExecutionException {
+        final Future<ParsedChunk> future;
+        if (ordered) {
+            future = pending.peek();
+        } else {
+            future = completion.take();
+        }
+        final ParsedChunk chunk = future.get();
+        pending.remove(future);
+        return chunk;
+    }
+
+    private static long deliver(ParsedChunk chunk, InterfaceNdJsonConsumer consumer)
+            throws InvalidParseOperationException {
+        long valid = 0;
+        for (int i = 0; i < chunk.nodes.size(); i++) {
+            final long lineNumber = chunk.firstLine + i;
+            final Object node = chunk.nodes.get(i);
+            if (node instanceof JsonNode) {
+                consumer.accept(lineNumber, (JsonNode) node);
+                valid++;
+            } else if (node instanceof InvalidParseOperationException) {
+                consumer.error(lineNumber, (InvalidParseOperationException) node);
+            }
+        }
+        return valid;
+    }
+
+    private static int lastNewline(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int countLines(byte[] buffer, int length) {
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Parsed lines of one chunk
+     */
+    private static final class ParsedChunk {
+        private final long firstLine;
+        /**
+         * JsonNode, InvalidParseOperationException or null (blank line) for each line
+         */
+        private final List<Object> nodes;
+
+        private ParsedChunk(long firstLine, List<Object> nodes) {
+            this.firstLine = firstLine;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Parses all lines of one chunk
+     */
+    private static final class ParseTask implements Callable<ParsedChunk> {
+        private final byte[] buffer;
+
+        private final int length;
+
+        private final long firstLine;
+
+        private ParseTask(byte[] buffer, int length, long firstLine) {
+            this.buffer = buffer;
+            this.length = length;
+            this.firstLine = firstLine;
+        }
+
+        @Override
+        public ParsedChunk call() {
+            final List<Object> nodes = new ArrayList<Object>();
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                while (end < length && buffer[end] != '\n') {
+                    end++;
+                }
+                nodes.add(parseLine(start, end));
+                start = end + 1;
+            }
+            return new ParsedChunk(firstLine, nodes);
+        }
+
+        private Object parseLine(int start, int end) {
+            int first = start;
+            int last = end;
+            while (first < last && buffer[first] <= ' ') {
+                first++;
+            }
+            while (last > first && buffer[last - 1] <= ' ') {
+                last--;
+            }
+            if (first == last) {
+                return null;
+            }
+            try {
+                return JsonHandler.getFromBytes(buffer, first, last - first);
+            } catch (final InvalidParseOperationException e) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Stops the parsing threads
+     */
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Cache of the ObjectReader and ObjectWriter of one ObjectMapper (so one configuration) by target
+ * type, so that the type is resolved and the root (de)serializer is found once.
+ *
+ * ObjectReader and ObjectWriter being immutable and thread-safe, they are shared by all threads.
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+final class ObjectMapperCache {
+    private final ObjectMapper mapper;
+
+    private final ConcurrentMap<Class<?>, JavaType> types = new ConcurrentHashMap<Class<?>, JavaType>();
+
+    private final ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<JavaType, ObjectReader>();
+
+    private final ConcurrentMap<JavaType, ObjectWriter> writers = new ConcurrentHashMap<JavaType, ObjectWriter>();
+
+    /**
+     *
+     * @param mapper
+     *            not to be configured anymore
+     */
+    ObjectMapperCache(final ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     *
+     * @param clasz
+     * @return the resolved type
+     */
+    JavaType getType(final Class<?> clasz) {
+        JavaType type = types.get(clasz);
+        if (type == null) {
+            type = mapper.constructType(clasz);
+            types.putIfAbsent(clasz, type);
+        }
+        return type;
+    }
+
+    /**
+     *
+     * @param typeReference
+     * @return the resolved type (not cached)
+     */
+    JavaType getType(final TypeReference<?> typeReference) {
+        return mapper.getTypeFactory().constructType(typeReference);
+    }
+
+    /**
+     *
+     * @param type
+     * @return the reader of this type
+     */
+    ObjectReader reader(final JavaType type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = mapper.reader(type);
+            final ObjectReader previous = readers.putIfAbsent(type, reader);
+            if (previous != null) {
+                reader = previous;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     *
+     * @param type
+     * @return the writer of this type
+     */
+    ObjectWriter writer(final JavaType type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = mapper.writerWithType(type);
+            final ObjectWriter previous = writers.putIfAbsent(type, writer);
+            if (previous != null) {
+                writer = previous;
+            }
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+/**
+ * JsonFactory using the buffers borrowed from the JsonBufferPool by the current call, if any,
+ * instead of the per thread buffers of Jackson
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+class PooledJsonFactory extends JsonFactory {
+    private static final long serialVersionUID = 4935718045219830583L;
+
+    PooledJsonFactory() {
+        super();
+    }
+
+    private PooledJsonFactory(final PooledJsonFactory src, final ObjectCodec codec) {
+        super(src, codec);
+    }
+
+    @Override
+    public JsonFactory copy() {
+        _checkInvalidCopy(PooledJsonFactory.class);
+        return new PooledJsonFactory(this, null);
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+        final BufferRecycler recycler = JsonBufferPool.currentRecycler();
+        return recycler == null ? super._getBufferRecycler() : recycler;
+    }
+}
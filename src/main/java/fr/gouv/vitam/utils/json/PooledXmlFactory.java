@@ -0,0 +1,53 @@
+/**
+ * This file is part of Vitam Project.
+ *
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ *
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.json;
+
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+
+/**
+ * XmlFactory using the buffers borrowed from the JsonBufferPool by the current call, if any,
+ * instead of the per thread buffers of Jackson
+ *
+ * @author "Frederic Bregier"
+ *
+ */
+class PooledXmlFactory extends XmlFactory {
+    private static final long serialVersionUID = -6021395174862113530L;
+
+    PooledXmlFactory() {
+        super();
+    }
+
+    private PooledXmlFactory(final PooledXmlFactory src, final ObjectCodec codec) {
+        super(src, codec);
+    }
+
+    @Override
+    public XmlFactory copy() {
+        _checkInvalidCopy(PooledXmlFactory.class);
+        return new PooledXmlFactory(this, null);
+    }
+
+    @Override
+    public BufferRecycler _getBufferRecycler() {
+        final BufferRecycler recycler = JsonBufferPool.currentRecycler();
+        return recycler == null ? super._getBufferRecycler() : recycler;
+    }
+}
@@ -19,14 +19,25 @@ package fr.gouv.vitam.utils.json;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.xml.JacksonXmlModule;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
@@ -52,7 +63,7 @@ public final class XmlHandler {
 
     static {
         XMLMODULE.setDefaultUseWrapper(false);
-        XML_MAPPER = new XmlMapper(XMLMODULE);
+        XML_MAPPER = new XmlMapper(new PooledXmlFactory(), XMLMODULE);
         XML_MAPPER.registerModule(new JodaModule());
         XML_MAPPER.setPropertyNamingStrategy(PropertyNamingStrategy.PASCAL_CASE_TO_CAMEL_CASE);
         XML_MAPPER.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
@@ -67,6 +78,25 @@ public final class XmlHandler {
         XML_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         XML_MAPPER.configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, true);
     }
+    /**
+     * Readers and writers by type
+     */
+    private static final ObjectMapperCache CACHE = new ObjectMapperCache(XML_MAPPER);
+    /**
+     * StAX factory of forEachElement, which reads external documents: no DTD, so no external or
+     * expanded entities
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+    /**
+     * Field of the text of an element having attributes or children
+     */
+    public static final String TEXT_FIELD = "";
 
     private XmlHandler() {
     }
@@ -79,12 +109,138 @@ public final class XmlHandler {
      */
     public static final <T> T getFromString(final String value, final Class<T> clasz) throws InvalidParseOperationException {
         try {
-            return XML_MAPPER.readValue(value, clasz);
+            return CACHE.reader(CACHE.getType(clasz)).readValue(value);
         } catch (IOException e) {
             throw new InvalidParseOperationException(e);
         }
     }
 
+    /**
+     * Typed handle, created once per type and shared by all threads
+     *
+     * @param clasz
+     * @return the reader of clasz
+     */
+    public static final ObjectReader reader(final Class<?> clasz) {
+        return CACHE.reader(CACHE.getType(clasz));
+    }
+
+    /**
+     * Typed handle, created once per type and shared by all threads
+     *
+     * @param clasz
+     * @return the writer of clasz
+     */
+    public static final ObjectWriter writer(final Class<?> clasz) {
+        return CACHE.writer(CACHE.getType(clasz));
+    }
+
+    /**
+     * Streams the XML document and calls the handler with the Json conversion of each element
+     * named elementName (local name, at any depth, an element nested in a matching one being part
+     * of it), so that only one element is in memory at a time whatever the size of the document.
+     * The stream is not closed.
+     *
+     * Attributes and child elements become fields named by their local name, repeated child
+     * elements becoming an array. The text of an element without attribute nor child is its value,
+     * otherwise it is the TEXT_FIELD field.
+     *
+     * @param inputStream
+     * @param elementName
+     *            such as ArchiveUnit
+     * @param handler
+     * @return the number of handled elements
+     * @throws InvalidParseOperationException
+     *             if the document is not valid XML or if the handler fails
+     */
+    public static final int forEachElement(final InputStream inputStream, final String elementName,
+            final InterfaceJsonElementHandler<JsonNode> handler) throws InvalidParseOperationException {
+        int count = 0;
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && elementName.equals(reader.getLocalName())) {
+                    handler.handle(readElement(reader));
+                    count++;
+                }
+            }
+        } catch (final XMLStreamException e) {
+            throw new InvalidParseOperationException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param reader
+     *            positioned on START_ELEMENT, left on the corresponding END_ELEMENT
+     * @return the Json conversion of the element
+     * @throws XMLStreamException
+     */
+    private static final JsonNode readElement(final XMLStreamReader reader) throws XMLStreamException {
+        ObjectNode node = null;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (node == null) {
+                node = JsonHandler.createObjectNode();
+            }
+            node.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        final StringBuilder text = new StringBuilder();
+        for (;;) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (node == null) {
+                        node = JsonHandler.createObjectNode();
+                    }
+                    final String name = reader.getLocalName();
+                    addField(node, name, readElement(reader));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    final String value = text.toString().trim();
+                    if (node == null) {
+                        return JsonHandler.getFactory().textNode(value);
+                    }
+                    if (!value.isEmpty()) {
+                        node.put(TEXT_FIELD, value);
+                    }
+                    return node;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adds the child, turning the field into an array when the child element is repeated (an
+     * element being never converted into an array itself)
+     */
+    private static final void addField(final ObjectNode node, final String name, final JsonNode child) {
+        final JsonNode previous = node.get(name);
+        if (previous == null) {
+            node.set(name, child);
+        } else if (previous.isArray()) {
+            ((ArrayNode) previous).add(child);
+        } else {
+            final ArrayNode array = node.putArray(name);
+            array.add(previous);
+            array.add(child);
+        }
+    }
+
     /**
      *
      * @param object
@@ -92,10 +248,14 @@ public final class XmlHandler {
      * @throws InvalidParseOperationException
      */
     public static final String writeAsString(final Object object) throws InvalidParseOperationException {
+        final JsonBufferPool pool = JsonHandler.getBufferPool();
+        final JsonBufferPool.Buffers buffers = pool.acquire();
         try {
             return XML_MAPPER.writeValueAsString(object);
         } catch (final JsonProcessingException e) {
             throw new InvalidParseOperationException(e);
+        } finally {
+            pool.release(buffers);
         }
     }
 
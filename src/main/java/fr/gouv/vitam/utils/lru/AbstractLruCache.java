@@ -18,7 +18,26 @@
 
 package fr.gouv.vitam.utils.lru;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import fr.gouv.vitam.utils.logging.VitamLogger;
+import fr.gouv.vitam.utils.logging.VitamLoggerFactory;
 
 /**
  * Base class for concrete implementations
@@ -30,8 +49,44 @@ import java.util.concurrent.Callable;
  * 
  */
 public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V> {
+    private static final VitamLogger LOGGER = VitamLoggerFactory.getInstance(AbstractLruCache.class);
+
     private long ttl;
 
+    private final InterfaceLruWeigher<? super K, ? super V> weigher;
+
+    /**
+     * Null when statistics are not recorded. Volatile and read once per call, since it may be
+     * changed while unsynchronized calls run.
+     */
+    private volatile LruStatsCounter statsCounter;
+
+    /**
+     * Null when refresh ahead is disabled
+     */
+    private volatile Executor refreshExecutor;
+
+    private float refreshRatio;
+
+    private final Set<K> refreshingKeys = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+
+    private LruReferenceType referenceType = LruReferenceType.STRONG;
+
+    private final ReferenceQueue<V> referenceQueue = new ReferenceQueue<V>();
+
+    private final List<InterfaceLruRemovalListener<? super K, ? super V>> removalListeners =
+            new CopyOnWriteArrayList<InterfaceLruRemovalListener<? super K, ? super V>>();
+
+    /**
+     * Null when notifications are delivered by the calling thread
+     */
+    private Executor removalExecutor = LruExecutors.getDefaultRemovalExecutor();
+
+    private LruExpiryPolicy expiryPolicy = LruExpiryPolicy.AFTER_WRITE;
+
+    private final ConcurrentLinkedQueue<PendingRemoval<K, V>> pendingRemovals =
+            new ConcurrentLinkedQueue<PendingRemoval<K, V>>();
+
     /**
      * Constructs BaseLruCache
      * 
@@ -40,11 +95,25 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
      *             if ttl is not positive
      */
     protected AbstractLruCache(long ttl) {
+        this(ttl, null);
+    }
+
+    /**
+     * Constructs BaseLruCache
+     * 
+     * @param ttl
+     * @param weigher
+     *            the weigher to use, null meaning each entry weighs 1
+     * @throws IllegalArgumentException
+     *             if ttl is not positive
+     */
+    protected AbstractLruCache(long ttl, InterfaceLruWeigher<? super K, ? super V> weigher) {
         if (ttl <= 0) {
             throw new IllegalArgumentException("ttl must be positive");
         }
 
         this.ttl = ttl;
+        this.weigher = weigher;
     }
 
     public boolean contains(K key) {
@@ -57,18 +126,163 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
     /**
      * Creates new LruCacheEntry<V>.
      * 
-     * It can be used to change implementation of LruCacheEntry
+     * It can be used to change implementation of LruCacheEntry. By default, the entry references
+     * its value according to the reference type of the cache.
      * 
+     * @param key
      * @param value
      * @param ttl
+     * @param weight
      * @return LruCacheEntry<V>
      */
+    protected InterfaceLruCacheEntry<V> createEntry(K key, V value, long ttl, long weight) {
+        switch (referenceType) {
+            case SOFT:
+                return new SoftReferenceCacheEntry<K, V>(key, value, referenceQueue, ttl, weight);
+            case WEAK:
+                return new WeakReferenceCacheEntry<K, V>(key, value, referenceQueue, ttl, weight);
+            default:
+                return new StrongReferenceCacheEntry<V>(value, ttl, weight);
+        }
+    }
+
+    /**
+     * Creates new LruCacheEntry<V> with a weight of 1 and no key.
+     *
+     * Kept for compatibility, subclasses should use and override createEntry(K, V, long, long):
+     * the new entries are only created through the latter.
+     *
+     * @param value
+     * @param ttl
+     * @return LruCacheEntry<V>
+     * @deprecated use {@link #createEntry(Object, Object, long, long)}
+     */
+    @Deprecated
     protected InterfaceLruCacheEntry<V> createEntry(V value, long ttl) {
-        return new StrongReferenceCacheEntry<V>(value, ttl);
+        return createEntry(null, value, ttl, 1);
+    }
+
+    /**
+     * Sets how the new entries reference their values (STRONG by default). SOFT or WEAK allow
+     * large optional caches to yield memory under pressure. It should be called before the cache
+     * is shared between threads.
+     * 
+     * @param referenceType
+     */
+    public void setReferenceType(LruReferenceType referenceType) {
+        if (referenceType == null) {
+            throw new IllegalArgumentException("referenceType must not be null");
+        }
+        this.referenceType = referenceType;
+    }
+
+    /**
+     * 
+     * @return the reference type of the new entries
+     */
+    public LruReferenceType getReferenceType() {
+        return referenceType;
+    }
+
+    /**
+     * Sets when the ttl of an entry starts (AFTER_WRITE by default). It should be called before
+     * the cache is shared between threads.
+     * 
+     * @param expiryPolicy
+     */
+    public void setExpiryPolicy(LruExpiryPolicy expiryPolicy) {
+        if (expiryPolicy == null) {
+            throw new IllegalArgumentException("expiryPolicy must not be null");
+        }
+        this.expiryPolicy = expiryPolicy;
+    }
+
+    /**
+     * 
+     * @return when the ttl of an entry starts
+     */
+    public LruExpiryPolicy getExpiryPolicy() {
+        return expiryPolicy;
+    }
+
+    /**
+     * Called on each hit when the expiry policy is AFTER_ACCESS. Resets the entry with the default
+     * ttl by default. Implementations should hold the cache lock.
+     * 
+     * @param key
+     * @param entry
+     */
+    protected void recordAccess(K key, InterfaceLruCacheEntry<V> entry) {
+        entry.resetTime(ttl);
+    }
+
+    /**
+     * Removes from cache the entries whose value was reclaimed by the garbage collector.
+     * Implementations should call it while holding the cache lock.
+     * 
+     * @return the number of removed entries
+     */
+    @SuppressWarnings("unchecked")
+    protected int drainReferenceQueue() {
+        int nb = 0;
+        Reference<? extends V> reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            final InterfaceKeyedCacheEntry<K, V> entry = (InterfaceKeyedCacheEntry<K, V>) reference;
+            if (removeEntry(entry.getKey(), entry)) {
+                notifyRemoval(entry.getKey(), entry, LruRemovalCause.COLLECTED);
+                nb++;
+            }
+        }
+        recordEvictions(LruRemovalCause.COLLECTED, nb);
+        return nb;
+    }
+
+    /**
+     * Removes the entry only if the key is still mapped to it
+     * 
+     * @param key
+     * @param expected
+     * @return True if removed
+     */
+    protected boolean removeEntry(K key, InterfaceLruCacheEntry<V> expected) {
+        if (getEntry(key) == expected) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the weight of the entry using the weigher if any
+     * 
+     * @param key
+     * @param value
+     * @return the weight of the entry (1 if no weigher)
+     * @throws IllegalArgumentException
+     *             if the weigher returns a negative weight
+     */
+    protected long weigh(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+        final long weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight must not be negative");
+        }
+        return weight;
     }
 
     public V get(K key) {
-        return getValue(key);
+        final V value = getValue(key);
+        final LruStatsCounter counter = statsCounter;
+        if (counter != null) {
+            if (value == null) {
+                counter.recordMisses(1);
+            } else {
+                counter.recordHits(1);
+            }
+        }
+        return value;
     }
 
     public V get(K key, Callable<V> callback) throws Exception {
@@ -80,13 +294,377 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
 
         // if element doesn't exist create it using callback
         if (value == null) {
-            value = callback.call();
-            put(key, value, ttl);
+            value = load(callback);
+            putLoaded(key, value, ttl);
+        } else if (refreshExecutor != null) {
+            final InterfaceLruCacheEntry<V> entry = getEntryToRefresh(key, System.currentTimeMillis());
+            if (entry != null) {
+                refresh(key, entry, callback, ttl);
+            }
         }
 
         return value;
     }
 
+    /**
+     * Enables refresh ahead: once an entry has lived more than ratio of its ttl, a get with a
+     * callback still returns the current value but reloads it asynchronously through the executor
+     * (at most one reload per key at a time). The reloaded value replaces the entry only if it was
+     * not changed in between. Refresh is only available through get with callback.
+     * 
+     * It should be called before the cache is shared between threads.
+     * 
+     * @param ratio
+     *            fraction of the ttl after which an entry is refreshed, between 0 and 1 exclusive
+     * @param executor
+     *            the executor running the reloads, typically bounded (see
+     *            {@link LruExecutors#newBoundedExecutor(String, int, int)})
+     * @throws IllegalArgumentException
+     *             if ratio is not between 0 and 1 exclusive or executor is null
+     */
+    public void setRefreshAhead(float ratio, Executor executor) {
+        if (ratio <= 0 || ratio >= 1) {
+            throw new IllegalArgumentException("ratio must be between 0 and 1 exclusive");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        refreshRatio = ratio;
+        refreshExecutor = executor;
+    }
+
+    /**
+     * Disables refresh ahead
+     */
+    public void disableRefreshAhead() {
+        refreshExecutor = null;
+    }
+
+    /**
+     * Returns the entry if it should be refreshed at timeRef. Implementations should hold the cache
+     * lock.
+     * 
+     * @param key
+     * @param timeRef
+     * @return the entry to refresh or null
+     */
+    protected InterfaceLruCacheEntry<V> getEntryToRefresh(K key, long timeRef) {
+        final InterfaceLruCacheEntry<V> entry = getEntry(key);
+        if (entry == null || !entry.isStillValid(timeRef)) {
+            return null;
+        }
+        final long creationTime = entry.getCreationTime();
+        final long refreshTime = creationTime + (long) ((entry.getExpirationTime() - creationTime) * refreshRatio);
+        return timeRef >= refreshTime ? entry : null;
+    }
+
+    /**
+     * Replaces the value of key only if its entry is still expected. Implementations should hold
+     * the cache lock.
+     * 
+     * @param key
+     * @param expected
+     * @param value
+     * @param ttl
+     * @return True if the value was replaced
+     */
+    protected boolean replaceValue(K key, InterfaceLruCacheEntry<V> expected, V value, long ttl) {
+        if (getEntry(key) != expected) {
+            return false;
+        }
+        putEntry(key, createEntry(key, value, ttl, weigh(key, value)));
+        return true;
+    }
+
+    private void refresh(final K key, final InterfaceLruCacheEntry<V> entry, final Callable<V> callback,
+            final long ttl) {
+        final Executor executor = refreshExecutor;
+        if (executor == null || !refreshingKeys.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        final V value = load(callback);
+                        if (value != null) {
+                            replaceValue(key, entry, value, ttl);
+                        }
+                    } catch (final Exception e) {
+                        LOGGER.debug("Refresh failed, current value kept", e);
+                    } finally {
+                        refreshingKeys.remove(key);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+        }
+    }
+
+    /**
+     * Stores a value obtained through a callback. Same as put by default.
+     * 
+     * @param key
+     * @param value
+     * @param ttl
+     */
+    protected void putLoaded(K key, V value, long ttl) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Stores values obtained through a batch loader. Same as putAll by default.
+     * 
+     * @param entries
+     * @param ttl
+     */
+    protected void putAllLoaded(Map<? extends K, ? extends V> entries, long ttl) {
+        putAll(entries, ttl);
+    }
+
+    /**
+     * Calls the callback, recording statistics if needed
+     * 
+     * @param callback
+     * @return the loaded value
+     * @throws Exception
+     *             if callback throws exception
+     */
+    protected V load(Callable<V> callback) throws Exception {
+        final LruStatsCounter counter = statsCounter;
+        if (counter == null) {
+            return callback.call();
+        }
+        final long start = System.nanoTime();
+        V value = null;
+        try {
+            value = callback.call();
+        } finally {
+            if (value == null) {
+                counter.recordLoadFailure(System.nanoTime() - start);
+            } else {
+                counter.recordLoadSuccess(System.nanoTime() - start);
+            }
+        }
+        return value;
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        getAllPresent(keys, result, null);
+        return result;
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader)
+            throws Exception {
+        return getAll(keys, loader, ttl);
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader, long ttl)
+            throws Exception {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        final Set<K> misses = new LinkedHashSet<K>();
+        getAllPresent(keys, result, misses);
+        if (!misses.isEmpty()) {
+            final Map<K, V> loaded = loadAll(loader, misses);
+            if (loaded != null && !loaded.isEmpty()) {
+                putAllLoaded(loaded, ttl);
+                for (final K key : misses) {
+                    final V value = loaded.get(key);
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fills result with the valid values cached with the given keys. Implementations should hold
+     * the cache lock once for all keys.
+     * 
+     * @param keys
+     * @param result
+     * @param misses
+     *            if not null, filled with keys without valid value
+     */
+    protected void getAllPresent(Collection<? extends K> keys, Map<K, V> result, Set<K> misses) {
+        int hits = 0;
+        for (final K key : keys) {
+            final V value = getValue(key);
+            if (value != null) {
+                result.put(key, value);
+                hits++;
+            } else if (misses != null) {
+                misses.add(key);
+            }
+        }
+        final LruStatsCounter counter = statsCounter;
+        if (counter != null) {
+            counter.recordHits(hits);
+            counter.recordMisses(keys.size() - hits);
+        }
+    }
+
+    /**
+     * Calls the batch loader, recording statistics if needed
+     * 
+     * @param loader
+     * @param keys
+     * @return the loaded values
+     * @throws Exception
+     *             if loader throws exception
+     */
+    protected Map<K, V> loadAll(InterfaceLruBatchLoader<K, V> loader, Set<K> keys) throws Exception {
+        final LruStatsCounter counter = statsCounter;
+        if (counter == null) {
+            return loader.loadAll(keys);
+        }
+        final long start = System.nanoTime();
+        Map<K, V> values = null;
+        try {
+            values = loader.loadAll(keys);
+        } finally {
+            if (values == null) {
+                counter.recordLoadFailure(System.nanoTime() - start);
+            } else {
+                counter.recordLoadSuccess(System.nanoTime() - start);
+            }
+        }
+        return values;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        putAll(entries, ttl);
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        for (final Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            final V value = entry.getValue();
+            if (value != null) {
+                putEntry(entry.getKey(), createEntry(entry.getKey(), value, ttl, weigh(entry.getKey(), value)));
+            }
+        }
+    }
+
+    public void removeAll(Collection<? extends K> keys) {
+        for (final K key : keys) {
+            remove(key);
+        }
+    }
+
+    public void setRecordStats(boolean recordStats) {
+        if (recordStats) {
+            if (statsCounter == null) {
+                statsCounter = new LruStatsCounter();
+            }
+        } else {
+            statsCounter = null;
+        }
+    }
+
+    public LruCacheStats getStats() {
+        final LruStatsCounter counter = statsCounter;
+        return counter == null ? LruCacheStats.EMPTY : counter.snapshot();
+    }
+
+    /**
+     * Records evicted entries in statistics if needed
+     * 
+     * @param cause
+     * @param count
+     */
+    protected void recordEvictions(LruRemovalCause cause, int count) {
+        final LruStatsCounter counter = statsCounter;
+        if (counter != null && count > 0) {
+            counter.recordEvictions(cause, count);
+        }
+    }
+
+    public void addRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        removalListeners.add(listener);
+    }
+
+    public void removeRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener) {
+        removalListeners.remove(listener);
+    }
+
+    /**
+     * Sets the executor delivering removal notifications (by default
+     * {@link LruExecutors#getDefaultRemovalExecutor()}). If the executor rejects them, they are
+     * delivered by the calling thread, still after the cache lock release.
+     * 
+     * @param executor
+     *            the executor to use, null meaning the calling thread delivers the notifications
+     */
+    public void setRemovalExecutor(Executor executor) {
+        removalExecutor = executor;
+    }
+
+    /**
+     * Collects a removal notification if any listener is registered. Implementations call it while
+     * holding the cache lock, the notification being delivered by dispatchRemovals.
+     * 
+     * @param key
+     * @param entry
+     * @param cause
+     */
+    protected void notifyRemoval(K key, InterfaceLruCacheEntry<V> entry, LruRemovalCause cause) {
+        if (!removalListeners.isEmpty()) {
+            pendingRemovals.add(new PendingRemoval<K, V>(key, entry.peekValue(), cause));
+        }
+    }
+
+    /**
+     * Delivers the collected removal notifications. Implementations call it after releasing the
+     * cache lock: it does nothing if the current thread still holds it (this).
+     */
+    protected void dispatchRemovals() {
+        if (pendingRemovals.isEmpty() || Thread.holdsLock(this)) {
+            return;
+        }
+        final List<PendingRemoval<K, V>> batch = new ArrayList<PendingRemoval<K, V>>();
+        PendingRemoval<K, V> removal;
+        while ((removal = pendingRemovals.poll()) != null) {
+            batch.add(removal);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Runnable delivery = new Runnable() {
+            public void run() {
+                deliver(batch);
+            }
+        };
+        final Executor executor = removalExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(delivery);
+                return;
+            } catch (final RejectedExecutionException e) {
+                // deliver directly
+            }
+        }
+        delivery.run();
+    }
+
+    private void deliver(List<PendingRemoval<K, V>> batch) {
+        for (final PendingRemoval<K, V> removal : batch) {
+            for (final InterfaceLruRemovalListener<? super K, ? super V> listener : removalListeners) {
+                try {
+                    listener.onRemoval(removal.key, removal.value, removal.cause);
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("Removal listener failed", e);
+                }
+            }
+        }
+    }
+
     public long getTtl() {
         return ttl;
     }
@@ -129,9 +707,15 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
         if (cacheEntry != null) {
             value = cacheEntry.getValue();
 
+            if (value != null && expiryPolicy == LruExpiryPolicy.AFTER_ACCESS) {
+                recordAccess(key, cacheEntry);
+            }
             // autoremove entry from cache if it's not valid
-            if (value == null) {
-                remove(key);
+            if (value == null && removeEntry(key, cacheEntry)) {
+                final LruRemovalCause cause = cacheEntry.getExpirationTime() < System.currentTimeMillis()
+                        ? LruRemovalCause.EXPIRED : LruRemovalCause.COLLECTED;
+                recordEvictions(cause, 1);
+                notifyRemoval(key, cacheEntry, cause);
             }
         }
 
@@ -148,7 +732,7 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
 
     public void put(K key, V value, long ttl) {
         if (value != null) {
-            putEntry(key, createEntry(value, ttl));
+            putEntry(key, createEntry(key, value, ttl, weigh(key, value)));
         }
     }
 
@@ -159,4 +743,21 @@ public abstract class AbstractLruCache<K, V> implements InterfaceLruCache<K, V>
      * @param entry
      */
     protected abstract void putEntry(K key, InterfaceLruCacheEntry<V> entry);
-}
\ No newline at end of file
+
+    /**
+     * Removal notification waiting for its delivery
+     */
+    private static final class PendingRemoval<K, V> {
+        private final K key;
+
+        private final V value;
+
+        private final LruRemovalCause cause;
+
+        private PendingRemoval(K key, V value, LruRemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Base of the LRU caches keyed by primitive values, avoiding key boxing and per entry objects.
+ * 
+ * Entries are stored in parallel arrays of capacity size (value, expiration time and an intrusive
+ * doubly linked LRU list by index), keys being stored by the subclass in its own arrays at the
+ * same index. An open addressed table (linear probing, at most half full, backward shift deletion)
+ * maps the key hash to the entry index.
+ * 
+ * Those methods must be called while holding the cache lock (this).
+ * 
+ * @author Frederic Bregier
+ * @param <V> Value
+ * 
+ */
+abstract class AbstractPrimitiveLruCache<V> {
+    /**
+     * Empty slot in table
+     */
+    protected static final int FREE = -1;
+
+    private final int capacity;
+
+    private final long ttl;
+
+    /**
+     * Entry index by slot, FREE if empty
+     */
+    protected final int[] table;
+
+    /**
+     * Mask to apply on hash to get a slot
+     */
+    protected final int mask;
+
+    private final Object[] values;
+
+    private final long[] expirations;
+
+    private final int[] previous;
+
+    private final int[] next;
+
+    /**
+     * Least recently used entry
+     */
+    private int head = FREE;
+
+    /**
+     * Most recently used entry
+     */
+    private int tail = FREE;
+
+    /**
+     * Free entries, chained through next
+     */
+    private int free;
+
+    private int size;
+
+    /**
+     * 
+     * @param capacity
+     *            max number of entries
+     * @param ttl
+     *            default time to live in milliseconds
+     * @throws IllegalArgumentException
+     *             if capacity or ttl is not positive
+     */
+    protected AbstractPrimitiveLruCache(int capacity, long ttl) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        if (capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity is too large");
+        }
+        this.capacity = capacity;
+        this.ttl = ttl;
+        final int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        clearTable();
+        values = new Object[capacity];
+        expirations = new long[capacity];
+        previous = new int[capacity];
+        next = new int[capacity];
+        clearEntries();
+    }
+
+    private void clearTable() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = FREE;
+        }
+    }
+
+    private void clearEntries() {
+        for (int i = 0; i < capacity; i++) {
+            values[i] = null;
+            next[i] = i + 1 < capacity ? i + 1 : FREE;
+        }
+        free = 0;
+        head = FREE;
+        tail = FREE;
+        size = 0;
+    }
+
+    /**
+     * Spreads the bits of a 64 bits hash
+     * 
+     * @param hash
+     * @return the mixed 32 bits hash
+     */
+    protected static final int mix(long hash) {
+        final long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 
+     * @param entry
+     * @return the hash (through mix) of the key stored at this entry index
+     */
+    protected abstract int hashOf(int entry);
+
+    /**
+     * 
+     * @param hash
+     * @return the first slot to probe for this hash
+     */
+    protected final int home(int hash) {
+        return hash & mask;
+    }
+
+    /**
+     * Evicts the least recently used entry if the cache is full
+     * 
+     * @return True if an entry was evicted, so that the slot found before must be searched again
+     */
+    protected final boolean ensureRoom() {
+        if (size < capacity) {
+            return false;
+        }
+        removeAt(slotOf(head));
+        return true;
+    }
+
+    /**
+     * Adds a new entry in the given free slot, the cache being not full
+     * 
+     * @param slot
+     * @param value
+     * @param ttl
+     * @return the entry index where the subclass stores the key
+     */
+    protected final int add(int slot, V value, long ttl) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        final int entry = free;
+        free = next[entry];
+        table[slot] = entry;
+        values[entry] = value;
+        expirations[entry] = System.currentTimeMillis() + ttl;
+        linkLast(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Replaces the value of the entry in the given slot
+     * 
+     * @param slot
+     * @param value
+     * @param ttl
+     */
+    protected final void update(int slot, V value, long ttl) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        final int entry = table[slot];
+        values[entry] = value;
+        expirations[entry] = System.currentTimeMillis() + ttl;
+        moveToLast(entry);
+    }
+
+    /**
+     * 
+     * @param slot
+     * @return the value of the entry in the given slot if still valid, null otherwise (expired entry
+     *         being removed)
+     */
+    @SuppressWarnings("unchecked")
+    protected final V valueAt(int slot) {
+        final int entry = table[slot];
+        if (System.currentTimeMillis() > expirations[entry]) {
+            removeAt(slot);
+            return null;
+        }
+        moveToLast(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * 
+     * @param slot
+     * @return True if the entry in the given slot is still valid
+     */
+    protected final boolean isValidAt(int slot) {
+        return System.currentTimeMillis() <= expirations[table[slot]];
+    }
+
+    /**
+     * Resets the time to live of the entry in the given slot to the default one
+     * 
+     * @param slot
+     */
+    protected final void resetTimeAt(int slot) {
+        expirations[table[slot]] = System.currentTimeMillis() + ttl;
+    }
+
+    /**
+     * Removes the entry in the given slot
+     * 
+     * @param slot
+     * @return the previous value if still valid, else null
+     */
+    @SuppressWarnings("unchecked")
+    protected final V removeAt(int slot) {
+        final int entry = table[slot];
+        final V value = System.currentTimeMillis() > expirations[entry] ? null : (V) values[entry];
+        unlink(entry);
+        values[entry] = null;
+        next[entry] = free;
+        free = entry;
+        size--;
+        deleteSlot(slot);
+        return value;
+    }
+
+    /**
+     * Backward shift deletion, so that no tombstone is needed
+     * 
+     * @param slot
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            final int entry = table[current];
+            if (entry == FREE) {
+                break;
+            }
+            final int ideal = home(hashOf(entry));
+            // move the entry back if its ideal slot is not within (hole, current]
+            if (((current - ideal) & mask) >= ((current - hole) & mask)) {
+                table[hole] = entry;
+                hole = current;
+            }
+        }
+        table[hole] = FREE;
+    }
+
+    private int slotOf(int entry) {
+        int slot = home(hashOf(entry));
+        while (table[slot] != entry) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void linkLast(int entry) {
+        previous[entry] = tail;
+        next[entry] = FREE;
+        if (tail == FREE) {
+            head = entry;
+        } else {
+            next[tail] = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        final int before = previous[entry];
+        final int after = next[entry];
+        if (before == FREE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == FREE) {
+            tail = before;
+        } else {
+            previous[after] = before;
+        }
+    }
+
+    private void moveToLast(int entry) {
+        if (entry != tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    /**
+     * Removes all entries from cache
+     */
+    public synchronized void clear() {
+        clearTable();
+        clearEntries();
+    }
+
+    /**
+     * Removes all expired entries from cache
+     * 
+     * @return the number of removed entries
+     */
+    public synchronized int forceClearOldest() {
+        final long now = System.currentTimeMillis();
+        int nb = 0;
+        int entry = head;
+        while (entry != FREE) {
+            final int following = next[entry];
+            if (now > expirations[entry]) {
+                removeAt(slotOf(entry));
+                nb++;
+            }
+            entry = following;
+        }
+        return nb;
+    }
+
+    /**
+     * 
+     * @return the number of entries (valid or not)
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 
+     * @return the max number of entries
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 
+     * @return the default time to live in milliseconds
+     */
+    public long getTtl() {
+        return ttl;
+    }
+}
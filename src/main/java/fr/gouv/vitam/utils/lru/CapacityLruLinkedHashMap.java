@@ -18,17 +18,21 @@
 
 package fr.gouv.vitam.utils.lru;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Capacity based LRU version of LinkedHashMap
- * 
+ * Capacity and weight based LRU version of LinkedHashMap
+ *
+ * The weight is only tracked through put, putAll, remove, clear and the eviction methods: the
+ * views and the other mutators must not be used to modify the map.
+ *
  * @author Frederic Bregier
  * @author Damian Momot
  * 
  */
-class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
+class CapacityLruLinkedHashMap<K, V extends InterfaceLruCacheEntry<?>> extends LinkedHashMap<K, V> {
     /**
      * 
      */
@@ -36,6 +40,10 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
 
     private final int capacity;
 
+    private final long maximumWeight;
+
+    private long weightedSize;
+
     /**
      * Creates LRU LinkedHashMap
      * 
@@ -47,18 +55,161 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
      */
     protected CapacityLruLinkedHashMap(int capacity, int initialCapacity,
             float loadFactor) {
+        this(capacity, Long.MAX_VALUE, initialCapacity, loadFactor);
+    }
+
+    /**
+     * Creates LRU LinkedHashMap bounded both by capacity and by total weight
+     * 
+     * @param capacity
+     * @param maximumWeight
+     * @param initialCapacity
+     * @param loadFactor
+     * @throws IllegalArgumentException
+     *             if capacity or maximumWeight is not positive
+     */
+    protected CapacityLruLinkedHashMap(int capacity, long maximumWeight, int initialCapacity,
+            float loadFactor) {
         super(initialCapacity, loadFactor, true);
 
         if (capacity <= 0) {
             throw new IllegalArgumentException("capacity must be positive");
         }
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
 
         this.capacity = capacity;
+        this.maximumWeight = maximumWeight;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final V old = super.put(key, value);
+        weightedSize += value.getWeight();
+        if (old != null) {
+            weightedSize -= old.getWeight();
+            resized(0, value.getWeight() - old.getWeight());
+        } else {
+            resized(1, value.getWeight());
+        }
+        evictToMaximumWeight();
+        return old;
+    }
+
+    /**
+     * Goes through put, since HashMap.putAll would bypass the weight tracking
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        final V old = super.remove(key);
+        if (old != null) {
+            weightedSize -= old.getWeight();
+            resized(-1, -old.getWeight());
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        final int size = size();
+        final long weight = weightedSize;
+        super.clear();
+        weightedSize = 0;
+        if (size > 0) {
+            resized(-size, -weight);
+        }
     }
 
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-        return size() > capacity;
+        if (size() > capacity) {
+            discard(eldest);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when an entry is evicted because of capacity or weight (not when it is removed
+     * explicitly or because of its ttl). Does nothing by default.
+     * 
+     * @param key
+     * @param value
+     */
+    protected void evicted(K key, V value) {
+        // nothing by default
+    }
+
+    /**
+     * Called when the number of entries or the total weight changes, with the differences. Does
+     * nothing by default.
+     * 
+     * @param entries
+     * @param weight
+     */
+    protected void resized(int entries, long weight) {
+        // nothing by default
+    }
+
+    /**
+     * Accounts for an evicted entry, already removed from the map
+     * 
+     * @param eldest
+     */
+    private void discard(Map.Entry<K, V> eldest) {
+        final long weight = eldest.getValue().getWeight();
+        weightedSize -= weight;
+        resized(-1, -weight);
+        evicted(eldest.getKey(), eldest.getValue());
+    }
+
+    /**
+     * Removes the eldest entries until the total weight fits within the maximum weight
+     */
+    private void evictToMaximumWeight() {
+        if (weightedSize <= maximumWeight) {
+            return;
+        }
+        final Iterator<Map.Entry<K, V>> iterator = entrySet().iterator();
+        while (weightedSize > maximumWeight && iterator.hasNext()) {
+            final Map.Entry<K, V> eldest = iterator.next();
+            iterator.remove();
+            discard(eldest);
+        }
+    }
+
+    /**
+     * Removes the eldest entry, as an evicted one
+     * 
+     * @return true if an entry was evicted, false if the map is empty
+     */
+    boolean evictEldest() {
+        final Iterator<Map.Entry<K, V>> iterator = entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        final Map.Entry<K, V> eldest = iterator.next();
+        iterator.remove();
+        discard(eldest);
+        return true;
+    }
+
+    /**
+     * Removes all entries, as evicted ones
+     */
+    void evictAll() {
+        for (final Map.Entry<K, V> entry : entrySet()) {
+            evicted(entry.getKey(), entry.getValue());
+        }
+        clear();
     }
 
     /**
@@ -70,4 +221,22 @@ class CapacityLruLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
         return this.capacity;
     }
 
+    /**
+     * Returns maximum weight of map
+     * 
+     * @return the maximum weight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Returns the current total weight of map
+     * 
+     * @return the weighted size
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
 }
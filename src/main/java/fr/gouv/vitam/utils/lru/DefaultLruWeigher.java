@@ -0,0 +1,114 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Default weigher, giving a rough estimation in bytes of the heap footprint of the value.
+ * 
+ * byte[], CharSequence and JsonNode (walking the whole tree) are estimated, any other object
+ * weighs {@link #OBJECT_WEIGHT}. Keys are ignored.
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public class DefaultLruWeigher implements InterfaceLruWeigher<Object, Object> {
+    /**
+     * Weight of an object header
+     */
+    public static final int OBJECT_WEIGHT = 16;
+    /**
+     * Weight of a reference
+     */
+    private static final int REFERENCE_WEIGHT = 8;
+    /**
+     * Weight of a String without its chars
+     */
+    private static final int STRING_WEIGHT = 40;
+    /**
+     * Weight of one map entry within an ObjectNode
+     */
+    private static final int FIELD_WEIGHT = 32;
+
+    public long weigh(Object key, Object value) {
+        if (value instanceof byte[]) {
+            return OBJECT_WEIGHT + ((byte[]) value).length;
+        } else if (value instanceof CharSequence) {
+            return weighString((CharSequence) value);
+        } else if (value instanceof JsonNode) {
+            return weighJsonNode((JsonNode) value);
+        }
+        return OBJECT_WEIGHT;
+    }
+
+    private static final long weighString(CharSequence value) {
+        return STRING_WEIGHT + 2L * value.length();
+    }
+
+    /**
+     * Walks the tree without recursion, so that deep documents cannot overflow the stack
+     * 
+     * @param root
+     * @return the estimated weight of the tree
+     */
+    private static final long weighJsonNode(JsonNode root) {
+        long weight = 0;
+        final ArrayDeque<JsonNode> stack = new ArrayDeque<JsonNode>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final JsonNode node = stack.pop();
+            weight += OBJECT_WEIGHT;
+            if (node.isObject()) {
+                weight += OBJECT_WEIGHT * 3;
+                final Iterator<Entry<String, JsonNode>> iterator = node.fields();
+                while (iterator.hasNext()) {
+                    final Entry<String, JsonNode> entry = iterator.next();
+                    weight += FIELD_WEIGHT + weighString(entry.getKey());
+                    stack.push(entry.getValue());
+                }
+            } else if (node.isArray()) {
+                weight += OBJECT_WEIGHT * 2;
+                final Iterator<JsonNode> iterator = node.elements();
+                while (iterator.hasNext()) {
+                    weight += REFERENCE_WEIGHT;
+                    stack.push(iterator.next());
+                }
+            } else if (node.isTextual()) {
+                weight += weighString(node.textValue());
+            } else if (node.isBinary()) {
+                try {
+                    weight += OBJECT_WEIGHT + node.binaryValue().length;
+                } catch (final IOException e) {
+                    // ignore, binary node cannot fail
+                }
+            } else if (node.isBigInteger() || node.isBigDecimal()) {
+                weight += OBJECT_WEIGHT * 2;
+            } else {
+                weight += REFERENCE_WEIGHT;
+            }
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,531 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+import fr.gouv.vitam.utils.logging.VitamLogger;
+import fr.gouv.vitam.utils.logging.VitamLoggerFactory;
+
+/**
+ * Append-only disk store made of segment files, with an in-memory index rebuilt from the segments
+ * when opened.
+ *
+ * Each record is: key length (int), value length (int, -1 for a removal), expiration time (long),
+ * key, value and a CRC32 of all previous fields. A truncated or corrupted tail (crash during a
+ * write) is discarded at recovery.
+ *
+ * When a new record would exceed the maximum size, the oldest segments are compacted (their live
+ * records copied into the active one) until it fits. Live records are never dropped: if they leave
+ * no room for the new record, it is refused.
+ *
+ * Not threadsafe: the owner must synchronize the calls.
+ *
+ * @author Frederic Bregier
+ * @param <K> Key
+ */
+class DiskSegmentStore<K> implements Closeable {
+    private static final VitamLogger LOGGER = VitamLoggerFactory.getInstance(DiskSegmentStore.class);
+
+    /**
+     * Extension of segment files
+     */
+    static final String EXTENSION = ".seg";
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int CRC_SIZE = 4;
+
+    private static final int TOMBSTONE = -1;
+
+    private final File directory;
+
+    private final long maximumBytes;
+
+    private final int segmentSize;
+
+    private final InterfaceLruCodec<K> keyCodec;
+
+    private final Map<K, DiskEntry> index = new HashMap<K, DiskEntry>();
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+
+    private Segment active;
+
+    private long nextId;
+
+    private long totalBytes;
+
+    private long liveBytes;
+
+    /**
+     * Opens the store, recovering the index from the existing segments if any
+     *
+     * @param directory
+     * @param maximumBytes
+     * @param segmentSize
+     * @param keyCodec
+     * @throws IOException
+     * @throws IllegalArgumentException
+     *             if segmentSize is not positive or maximumBytes is less than segmentSize
+     */
+    DiskSegmentStore(File directory, long maximumBytes, int segmentSize, InterfaceLruCodec<K> keyCodec)
+            throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        if (maximumBytes < segmentSize) {
+            throw new IllegalArgumentException("maximumBytes must be at least segmentSize");
+        }
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        this.segmentSize = segmentSize;
+        this.keyCodec = keyCodec;
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        recover();
+    }
+
+    private void recover() throws IOException {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(EXTENSION) && segmentId(name) >= 0;
+            }
+        });
+        final long[] ids = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            ids[i] = segmentId(files[i].getName());
+        }
+        Arrays.sort(ids);
+        final long now = System.currentTimeMillis();
+        for (final long id : ids) {
+            final Segment segment = new Segment(segmentFile(id));
+            segments.addLast(segment);
+            scan(segment, now);
+            totalBytes += segment.size;
+            nextId = id + 1;
+        }
+        active = segments.peekLast();
+        makeRoom(0);
+    }
+
+    private static long segmentId(String name) {
+        try {
+            return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, String.format("%016d", id) + EXTENSION);
+    }
+
+    /**
+     * Reads all valid records of the segment into the index, truncating any invalid tail
+     *
+     * @param segment
+     * @param now
+     * @throws IOException
+     */
+    private void scan(Segment segment, long now) throws IOException {
+        final long size = segment.channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long position = 0;
+        while (position + HEADER_SIZE + CRC_SIZE <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            final int keyLength = header.getInt(0);
+            final int valueLength = header.getInt(4);
+            final long expirationTime = header.getLong(8);
+            if (keyLength <= 0 || valueLength < TOMBSTONE) {
+                break;
+            }
+            final long recordSize = recordSize(keyLength, valueLength);
+            if (recordSize > size - position) {
+                break;
+            }
+            final ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+            readFully(segment.channel, record, position);
+            final CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, record.capacity() - CRC_SIZE);
+            if ((int) crc.getValue() != record.getInt(record.capacity() - CRC_SIZE)) {
+                break;
+            }
+            final K key;
+            try {
+                key = keyCodec.decode(Arrays.copyOfRange(record.array(), HEADER_SIZE, HEADER_SIZE + keyLength));
+            } catch (final InvalidParseOperationException e) {
+                LOGGER.warn("Invalid key in segment " + segment.file, e);
+                break;
+            }
+            release(index.remove(key));
+            if (valueLength != TOMBSTONE && expirationTime >= now) {
+                final DiskEntry entry = new DiskEntry(segment, position, (int) recordSize, keyLength,
+                        valueLength, expirationTime);
+                index.put(key, entry);
+                retain(entry);
+            }
+            position += recordSize;
+        }
+        if (position < size) {
+            LOGGER.warn("Truncating invalid tail of segment " + segment.file + " at " + position);
+            segment.channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private static long recordSize(int keyLength, int valueLength) {
+        return (long) HEADER_SIZE + keyLength + Math.max(0, valueLength) + CRC_SIZE;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            current += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+    }
+
+    private void retain(DiskEntry entry) {
+        entry.segment.liveBytes += entry.recordSize;
+        liveBytes += entry.recordSize;
+    }
+
+    private void release(DiskEntry entry) {
+        if (entry != null) {
+            entry.segment.liveBytes -= entry.recordSize;
+            liveBytes -= entry.recordSize;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.channel.force(false);
+        }
+        active = new Segment(segmentFile(nextId));
+        nextId++;
+        segments.addLast(active);
+    }
+
+    private DiskEntry append(byte[] key, byte[] value, long expirationTime) throws IOException {
+        final int valueLength = value == null ? TOMBSTONE : value.length;
+        final int recordSize = (int) recordSize(key.length, valueLength);
+        if (active == null || active.size + recordSize > segmentSize) {
+            roll();
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        buffer.putInt(key.length).putInt(valueLength).putLong(expirationTime).put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, recordSize - CRC_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        writeFully(active.channel, buffer, active.size);
+        final DiskEntry entry = new DiskEntry(active, active.size, recordSize, key.length, valueLength,
+                expirationTime);
+        active.size += recordSize;
+        totalBytes += recordSize;
+        return entry;
+    }
+
+    /**
+     * Stores the value, replacing the previous one if any. Values too large for a segment, or for
+     * the room left by the live records, are not stored (and the previous one is removed).
+     *
+     * @param key
+     * @param value
+     * @param expirationTime
+     *            absolute time in milliseconds
+     * @return True if the value was stored
+     * @throws IOException
+     * @throws InvalidParseOperationException
+     *             if the key cannot be encoded
+     */
+    boolean put(K key, byte[] value, long expirationTime) throws IOException, InvalidParseOperationException {
+        final byte[] keyBytes = keyCodec.encode(key);
+        final long recordSize = recordSize(keyBytes.length, value.length);
+        final DiskEntry previous = index.get(key);
+        final long previousSize = previous == null ? 0 : previous.recordSize;
+        if (recordSize > segmentSize || liveBytes - previousSize + recordSize > maximumBytes) {
+            remove(key);
+            return false;
+        }
+        // the previous record is not to be kept by the compaction
+        release(index.remove(key));
+        makeRoom(recordSize);
+        final DiskEntry entry = append(keyBytes, value, expirationTime);
+        index.put(key, entry);
+        retain(entry);
+        return true;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the index entry or null if it does not exist or is expired
+     */
+    DiskEntry get(K key) {
+        final DiskEntry entry = index.get(key);
+        if (entry != null && entry.expirationTime < System.currentTimeMillis()) {
+            index.remove(key);
+            release(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     *
+     * @param entry
+     * @return the value of the entry
+     * @throws IOException
+     */
+    byte[] read(DiskEntry entry) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(entry.valueLength);
+        readFully(entry.segment.channel, buffer, entry.position + HEADER_SIZE + entry.keyLength);
+        return buffer.array();
+    }
+
+    /**
+     * Removes the entry, writing a removal record so that it is not recovered later on
+     *
+     * @param key
+     * @return True if the entry existed
+     * @throws IOException
+     * @throws InvalidParseOperationException
+     *             if the key cannot be encoded
+     */
+    boolean remove(K key) throws IOException, InvalidParseOperationException {
+        final DiskEntry entry = index.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        release(entry);
+        append(keyCodec.encode(key), null, 0);
+        makeRoom(0);
+        return true;
+    }
+
+    /**
+     * Removes all expired entries from the index (expired records are ignored at recovery)
+     *
+     * @return the keys of the removed entries
+     */
+    List<K> removeExpired() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Entry<K, DiskEntry>> iterator = index.entrySet().iterator();
+        final List<K> expired = new ArrayList<K>();
+        while (iterator.hasNext()) {
+            final Entry<K, DiskEntry> item = iterator.next();
+            if (item.getValue().expirationTime < now) {
+                iterator.remove();
+                release(item.getValue());
+                expired.add(item.getKey());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Compacts the oldest segments until the needed bytes fit within the maximum size. Only the
+     * oldest segment is compacted, so that its removal records cannot hide an older record.
+     *
+     * @param needed
+     * @throws IOException
+     */
+    private void makeRoom(long needed) throws IOException {
+        if (liveBytes + needed > maximumBytes) {
+            // cannot be reached without dropping live records
+            return;
+        }
+        while (totalBytes + needed > maximumBytes && !segments.isEmpty()) {
+            compact(segments.peekFirst());
+        }
+    }
+
+    /**
+     * Copies the live records of the segment into the active one then deletes it
+     *
+     * @param segment
+     * @throws IOException
+     */
+    private void compact(Segment segment) throws IOException {
+        if (segment == active) {
+            roll();
+        }
+        for (final Entry<K, DiskEntry> item : index.entrySet()) {
+            final DiskEntry entry = item.getValue();
+            if (entry.segment == segment) {
+                final ByteBuffer record = ByteBuffer.allocate(entry.recordSize);
+                readFully(segment.channel, record, entry.position);
+                final byte[] key = Arrays.copyOfRange(record.array(), HEADER_SIZE, HEADER_SIZE + entry.keyLength);
+                final byte[] value = Arrays.copyOfRange(record.array(), HEADER_SIZE + entry.keyLength,
+                        HEADER_SIZE + entry.keyLength + entry.valueLength);
+                final DiskEntry moved = append(key, value, entry.expirationTime);
+                release(entry);
+                retain(moved);
+                item.setValue(moved);
+            }
+        }
+        delete(segment);
+    }
+
+    private void delete(Segment segment) throws IOException {
+        segments.remove(segment);
+        totalBytes -= segment.size;
+        if (segment == active) {
+            active = null;
+        }
+        segment.close();
+        if (!segment.file.delete()) {
+            LOGGER.warn("Cannot delete segment " + segment.file);
+        }
+    }
+
+    /**
+     * Removes all entries and segments
+     *
+     * @throws IOException
+     */
+    void clear() throws IOException {
+        index.clear();
+        while (!segments.isEmpty()) {
+            delete(segments.peekFirst());
+        }
+        totalBytes = 0;
+        liveBytes = 0;
+    }
+
+    /**
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return index.size();
+    }
+
+    /**
+     *
+     * @return the total size of segments in bytes
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void close() throws IOException {
+        for (final Segment segment : segments) {
+            segment.channel.force(false);
+            segment.close();
+        }
+    }
+
+    /**
+     * One segment file
+     */
+    private static final class Segment {
+        private final File file;
+
+        private final RandomAccessFile raf;
+
+        private final FileChannel channel;
+
+        private long size;
+
+        private long liveBytes;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            size = channel.size();
+        }
+
+        private void close() throws IOException {
+            channel.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Index entry pointing to a record within a segment
+     */
+    static final class DiskEntry {
+        private final Segment segment;
+
+        private final long position;
+
+        private final int recordSize;
+
+        private final int keyLength;
+
+        private final int valueLength;
+
+        private final long expirationTime;
+
+        private DiskEntry(Segment segment, long position, int recordSize, int keyLength, int valueLength,
+                long expirationTime) {
+            this.segment = segment;
+            this.position = position;
+            this.recordSize = recordSize;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.expirationTime = expirationTime;
+        }
+
+        /**
+         *
+         * @return the absolute expiration time in milliseconds
+         */
+        long getExpirationTime() {
+            return expirationTime;
+        }
+    }
+}
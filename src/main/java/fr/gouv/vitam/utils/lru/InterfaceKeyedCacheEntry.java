@@ -0,0 +1,36 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Cache entry knowing its key, so that it can be purged from the cache when found in a reference
+ * queue
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ * 
+ */
+interface InterfaceKeyedCacheEntry<K, V> extends InterfaceLruCacheEntry<V> {
+    /**
+     * 
+     * @return the key of this entry
+     */
+    public K getKey();
+}
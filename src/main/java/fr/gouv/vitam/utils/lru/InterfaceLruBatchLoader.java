@@ -0,0 +1,41 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batch loader interface, used to load all missing values of a bulk get in one call
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ * 
+ */
+public interface InterfaceLruBatchLoader<K, V> {
+    /**
+     * Loads the values of the given keys. Keys without value may be absent from the result.
+     * 
+     * @param keys
+     * @return the loaded values by key
+     * @throws Exception
+     */
+    public Map<K, V> loadAll(Set<K> keys) throws Exception;
+}
@@ -18,6 +18,8 @@
 
 package fr.gouv.vitam.utils.lru;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
@@ -85,6 +87,42 @@ public interface InterfaceLruCache<K, V> {
      */
     public V get(K key, Callable<V> callback, long ttl) throws Exception;
 
+    /**
+     * Returns all valid values cached with the given keys, holding the cache lock once
+     * 
+     * @param keys
+     * @return the values by key (keys without valid entry are absent)
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys);
+
+    /**
+     * Returns all values cached with the given keys. All missing values are loaded through one call
+     * to loader, then stored in cache. Default TTL is used
+     * 
+     * @param keys
+     * @param loader
+     * @return the values by key (keys without value, even after loading, are absent)
+     * @throws Exception
+     *             if loader throws exception
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader)
+            throws Exception;
+
+    /**
+     * Returns all values cached with the given keys. All missing values are loaded through one call
+     * to loader, then stored in cache
+     * 
+     * @param keys
+     * @param loader
+     * @param ttl
+     *            time to live in milliseconds
+     * @return the values by key (keys without value, even after loading, are absent)
+     * @throws Exception
+     *             if loader throws exception
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader, long ttl)
+            throws Exception;
+
     /**
      * Returns cache capacity
      * 
@@ -92,6 +130,21 @@ public interface InterfaceLruCache<K, V> {
      */
     public int getCapacity();
 
+    /**
+     * Returns the maximum total weight of the entries stored in cache
+     * 
+     * @return the maximum weight (Long.MAX_VALUE if the cache is bounded by capacity only)
+     */
+    public long getMaximumWeight();
+
+    /**
+     * Returns the total weight of the entries stored in cache (including invalid ones). Without
+     * weigher, each entry weighs 1 and so the weighted size is the number of entries.
+     * 
+     * @return the current weighted size
+     */
+    public long getWeightedSize();
+
     /**
      * Returns number of entries stored in cache (including invalid ones)
      * 
@@ -139,6 +192,29 @@ public interface InterfaceLruCache<K, V> {
      */
     public void put(K key, V value, long ttl);
 
+    /**
+     * Puts all values into cache, holding the cache lock once. Default TTL is used
+     * 
+     * @param entries
+     */
+    public void putAll(Map<? extends K, ? extends V> entries);
+
+    /**
+     * Puts all values into cache with desired TTL, holding the cache lock once
+     * 
+     * @param entries
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl);
+
+    /**
+     * Removes entries from cache (if exist), holding the cache lock once
+     * 
+     * @param keys
+     */
+    public void removeAll(Collection<? extends K> keys);
+
     /**
      * Removes entry from cache (if exists)
      * 
@@ -146,6 +222,36 @@ public interface InterfaceLruCache<K, V> {
      * @return the value if it still exists
      */
     public V remove(K key);
+    /**
+     * Enables or disables the recording of statistics (disabled by default). It should be called
+     * before the cache is shared between threads.
+     * 
+     * @param recordStats
+     */
+    public void setRecordStats(boolean recordStats);
+
+    /**
+     * 
+     * @return a snapshot of the statistics (all 0 if statistics are not recorded)
+     */
+    public LruCacheStats getStats();
+
+    /**
+     * Adds a listener notified of each removal from the cache with its cause. Notifications are
+     * collected while holding the cache lock but delivered after its release, asynchronously by
+     * default.
+     * 
+     * @param listener
+     */
+    public void addRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener);
+
+    /**
+     * Removes a listener previously added
+     * 
+     * @param listener
+     */
+    public void removeRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener);
+
     /**
      * Update the TTL of the associated object if it still exists
      * 
@@ -47,4 +47,29 @@ public interface InterfaceLruCacheEntry<V> {
      * @return True if this entry has its time reset
      */
     public boolean resetTime(long ttl);
+
+    /**
+     * 
+     * @return the weight of this entry, as computed when the entry was created
+     */
+    public long getWeight();
+
+    /**
+     * 
+     * @return the absolute expiration time in milliseconds
+     */
+    public long getExpirationTime();
+
+    /**
+     * 
+     * @return the time in milliseconds when this entry was created
+     */
+    public long getCreationTime();
+
+    /**
+     * Returns value stored in entry even if not valid anymore, for removal notifications
+     * 
+     * @return Value or null if it was reclaimed
+     */
+    public V peekValue();
 }
\ No newline at end of file
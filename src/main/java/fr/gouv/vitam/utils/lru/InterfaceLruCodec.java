@@ -0,0 +1,47 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Codec interface, used to serialize keys or values of a cache to bytes (for instance to store
+ * them on disk)
+ * 
+ * @author Frederic Bregier
+ * @param <T> Type of the encoded objects
+ * 
+ */
+public interface InterfaceLruCodec<T> {
+    /**
+     * 
+     * @param object
+     * @return the bytes representation of the object
+     * @throws InvalidParseOperationException
+     */
+    public byte[] encode(T object) throws InvalidParseOperationException;
+
+    /**
+     * 
+     * @param bytes
+     * @return the object decoded from bytes
+     * @throws InvalidParseOperationException
+     */
+    public T decode(byte[] bytes) throws InvalidParseOperationException;
+}
@@ -0,0 +1,40 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Partitioner interface, selecting from the key the partition (typically the tenant) of a
+ * PartitionedLruCache
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * 
+ */
+public interface InterfaceLruPartitioner<K> {
+    /**
+     * Returns the partition of the key. It must always return the same partition for the same
+     * key.
+     * 
+     * @param key
+     * @param partitions
+     *            number of partitions
+     * @return the partition, between 0 and partitions - 1
+     */
+    public int partition(K key, int partitions);
+}
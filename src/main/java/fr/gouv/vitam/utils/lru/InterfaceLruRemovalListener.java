@@ -0,0 +1,39 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Listener of the removals of entries from a cache
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ * 
+ */
+public interface InterfaceLruRemovalListener<K, V> {
+    /**
+     * Called once an entry was removed, never while holding the cache lock
+     * 
+     * @param key
+     * @param value
+     *            the removed value, null if it was reclaimed by the garbage collector
+     * @param cause
+     */
+    public void onRemoval(K key, V value, LruRemovalCause cause);
+}
@@ -0,0 +1,39 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Weigher interface, used to bound a cache by the total weight of its entries (typically an
+ * estimation of their memory footprint) rather than by their number only.
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ * 
+ */
+public interface InterfaceLruWeigher<K, V> {
+    /**
+     * Returns the weight of the entry. It is computed once when the entry is put into cache, so
+     * it must not change afterwards.
+     * 
+     * @param key
+     * @param value
+     * @return the weight of the entry (must not be negative)
+     */
+    public long weigh(K key, V value);
+}
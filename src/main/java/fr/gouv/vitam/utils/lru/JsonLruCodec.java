@@ -0,0 +1,42 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.FileUtil;
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+import fr.gouv.vitam.utils.json.JsonHandler;
+
+/**
+ * Codec for JsonNode using JsonHandler
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public class JsonLruCodec implements InterfaceLruCodec<JsonNode> {
+
+    public byte[] encode(JsonNode object) throws InvalidParseOperationException {
+        return JsonHandler.writeAsString(object).getBytes(FileUtil.UTF8);
+    }
+
+    public JsonNode decode(byte[] bytes) throws InvalidParseOperationException {
+        return JsonHandler.getFromBytes(bytes);
+    }
+}
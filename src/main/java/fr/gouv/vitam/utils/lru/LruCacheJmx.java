@@ -0,0 +1,139 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registration of caches as MBeans in the platform MBean server, under the name
+ * "fr.gouv.vitam.utils.lru:type=LruCache,name=<i>name</i>"
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public final class LruCacheJmx implements LruCacheStatsMXBean {
+    /**
+     * JMX domain
+     */
+    public static final String DOMAIN = "fr.gouv.vitam.utils.lru";
+
+    private final InterfaceLruCache<?, ?> cache;
+
+    private LruCacheJmx(InterfaceLruCache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 
+     * @param name
+     * @return the ObjectName of the cache
+     * @throws JMException
+     *             if the name is not valid
+     */
+    public static ObjectName getObjectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=LruCache,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Registers the cache, replacing any cache previously registered with the same name. Statistics
+     * recording should be enabled on the cache.
+     * 
+     * @param name
+     * @param cache
+     * @return the ObjectName of the cache
+     * @throws JMException
+     *             if the registration failed
+     */
+    public static ObjectName register(String name, InterfaceLruCache<?, ?> cache) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = getObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(new LruCacheJmx(cache), objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters the cache if registered
+     * 
+     * @param name
+     * @throws JMException
+     *             if the unregistration failed
+     */
+    public static void unregister(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = getObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    public int getCapacity() {
+        return cache.getCapacity();
+    }
+
+    public long getWeightedSize() {
+        return cache.getWeightedSize();
+    }
+
+    public long getHitCount() {
+        return cache.getStats().getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getStats().getMissCount();
+    }
+
+    public double getHitRate() {
+        return cache.getStats().getHitRate();
+    }
+
+    public long getLoadSuccessCount() {
+        return cache.getStats().getLoadSuccessCount();
+    }
+
+    public long getLoadFailureCount() {
+        return cache.getStats().getLoadFailureCount();
+    }
+
+    public double getAverageLoadPenalty() {
+        return cache.getStats().getAverageLoadPenalty();
+    }
+
+    public long getSizeEvictionCount() {
+        return cache.getStats().getEvictionCount(LruRemovalCause.SIZE);
+    }
+
+    public long getExpiredEvictionCount() {
+        return cache.getStats().getEvictionCount(LruRemovalCause.EXPIRED);
+    }
+
+    public long getCollectedEvictionCount() {
+        return cache.getStats().getEvictionCount(LruRemovalCause.COLLECTED);
+    }
+}
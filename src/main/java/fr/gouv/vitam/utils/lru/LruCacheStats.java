@@ -0,0 +1,166 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the statistics of a cache
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public final class LruCacheStats {
+    /**
+     * Statistics of a cache not recording them
+     */
+    public static final LruCacheStats EMPTY = new LruCacheStats(0, 0, 0, 0, 0,
+            new long[LruRemovalCause.values().length]);
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTime;
+
+    private final long[] evictionCounts;
+
+    LruCacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+            long totalLoadTime, long[] evictionCounts) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCounts = evictionCounts;
+    }
+
+    /**
+     * 
+     * @return the number of get returning a valid value
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 
+     * @return the number of get returning no value
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 
+     * @return the number of get (hits and misses)
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * 
+     * @return the ratio of hits over requests (1.0 if no request)
+     */
+    public double getHitRate() {
+        final long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * 
+     * @return the number of values successfully loaded through a callback
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * 
+     * @return the number of callbacks that failed or returned null
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * 
+     * @return the total time spent in callbacks in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * 
+     * @return the average time spent in one callback in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        final long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * 
+     * @return the number of evicted entries, whatever the cause
+     */
+    public long getEvictionCount() {
+        long count = 0;
+        for (final long evictionCount : evictionCounts) {
+            count += evictionCount;
+        }
+        return count;
+    }
+
+    /**
+     * 
+     * @param cause
+     * @return the number of entries evicted for this cause
+     */
+    public long getEvictionCount(LruRemovalCause cause) {
+        return evictionCounts[cause.ordinal()];
+    }
+
+    /**
+     * 
+     * @param other
+     * @return the sum of these statistics and the other ones
+     */
+    public LruCacheStats plus(LruCacheStats other) {
+        final long[] counts = new long[evictionCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = evictionCounts[i] + other.evictionCounts[i];
+        }
+        return new LruCacheStats(hitCount + other.hitCount, missCount + other.missCount,
+                loadSuccessCount + other.loadSuccessCount, loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime, counts);
+    }
+
+    @Override
+    public String toString() {
+        return "LruCacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount="
+                + loadSuccessCount + ", loadFailureCount=" + loadFailureCount + ", totalLoadTime="
+                + totalLoadTime + ", evictionCounts=" + Arrays.toString(evictionCounts) + "}";
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * JMX view of a cache and of its statistics
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public interface LruCacheStatsMXBean {
+    /**
+     * 
+     * @return the number of entries
+     */
+    public int getSize();
+
+    /**
+     * 
+     * @return the capacity
+     */
+    public int getCapacity();
+
+    /**
+     * 
+     * @return the total weight of entries
+     */
+    public long getWeightedSize();
+
+    /**
+     * 
+     * @return the number of hits
+     */
+    public long getHitCount();
+
+    /**
+     * 
+     * @return the number of misses
+     */
+    public long getMissCount();
+
+    /**
+     * 
+     * @return the ratio of hits over requests
+     */
+    public double getHitRate();
+
+    /**
+     * 
+     * @return the number of successful loads
+     */
+    public long getLoadSuccessCount();
+
+    /**
+     * 
+     * @return the number of failed loads
+     */
+    public long getLoadFailureCount();
+
+    /**
+     * 
+     * @return the average load time in nanoseconds
+     */
+    public double getAverageLoadPenalty();
+
+    /**
+     * 
+     * @return the number of evictions because of capacity or weight
+     */
+    public long getSizeEvictionCount();
+
+    /**
+     * 
+     * @return the number of evictions because of ttl
+     */
+    public long getExpiredEvictionCount();
+
+    /**
+     * 
+     * @return the number of evictions because the value was reclaimed by the garbage collector
+     */
+    public long getCollectedEvictionCount();
+}
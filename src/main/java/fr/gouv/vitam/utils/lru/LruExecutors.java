@@ -0,0 +1,121 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of the bounded executors used for asynchronous cache tasks
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public final class LruExecutors {
+    private static final long KEEP_ALIVE = 60;
+
+    /**
+     * Max number of waiting removal notification batches
+     */
+    private static final int REMOVAL_QUEUE_SIZE = 10000;
+
+    private static volatile ThreadPoolExecutor removalExecutor;
+
+    private LruExecutors() {
+        // Unused
+    }
+
+    /**
+     * Creates a bounded executor with daemon threads, rejecting tasks (with a
+     * RejectedExecutionException) when its queue is full, so that the caller decides whether the
+     * task is skipped or run directly
+     * 
+     * @param name
+     *            prefix of the thread names
+     * @param threads
+     *            max number of threads
+     * @param queueSize
+     *            max number of waiting tasks
+     * @return the new executor
+     */
+    public static ThreadPoolExecutor newBoundedExecutor(String name, int threads, int queueSize) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates a single daemon thread scheduled executor
+     * 
+     * @param name
+     *            prefix of the thread name
+     * @return the new executor
+     */
+    public static ScheduledThreadPoolExecutor newScheduledExecutor(String name) {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(name));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    /**
+     * Returns the executor shared by all caches to deliver removal notifications: one daemon
+     * thread, so that notifications are delivered in order, and a bounded queue
+     * 
+     * @return the default removal executor
+     */
+    public static Executor getDefaultRemovalExecutor() {
+        ThreadPoolExecutor executor = removalExecutor;
+        if (executor == null) {
+            synchronized (LruExecutors.class) {
+                executor = removalExecutor;
+                if (executor == null) {
+                    executor = newBoundedExecutor("LruRemoval", 1, REMOVAL_QUEUE_SIZE);
+                    removalExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Thread factory of named daemon threads
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
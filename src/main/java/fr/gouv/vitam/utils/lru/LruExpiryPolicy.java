@@ -0,0 +1,36 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * When the time to live of a cache entry starts
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public enum LruExpiryPolicy {
+    /**
+     * The ttl starts when the value is put (or its ttl explicitly updated)
+     */
+    AFTER_WRITE,
+    /**
+     * The ttl restarts on each read of the value (sliding expiration)
+     */
+    AFTER_ACCESS;
+}
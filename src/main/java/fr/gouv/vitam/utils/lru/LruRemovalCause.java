@@ -0,0 +1,48 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Cause of the removal of an entry from a cache
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public enum LruRemovalCause {
+    /**
+     * Removed by the user (remove, removeAll or clear)
+     */
+    EXPLICIT,
+    /**
+     * Replaced by a new value for the same key (put or refresh)
+     */
+    REPLACED,
+    /**
+     * Evicted because of the capacity or the maximum weight of the cache
+     */
+    SIZE,
+    /**
+     * Evicted because its ttl has expired
+     */
+    EXPIRED,
+    /**
+     * Evicted because its value was reclaimed by the garbage collector (soft or weak references)
+     */
+    COLLECTED;
+}
@@ -0,0 +1,219 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * Binary snapshot file of a cache content, in LRU order (least recently used first).
+ *
+ * The file is: magic (int), version (byte), with values flag (byte), then for each entry: key
+ * length (int), key, expiration time (long) and, with values, value length (int) and value. It
+ * ends with -1 (int), the number of entries (int) and a CRC32 (long) of all previous bytes.
+ *
+ * The file is written in a temporary file then renamed, so that a crash never leaves a partial
+ * snapshot.
+ *
+ * @author Frederic Bregier
+ */
+final class LruSnapshotFile {
+    private static final int MAGIC = 0x564C5255;
+
+    private static final byte VERSION = 1;
+
+    private static final int END = -1;
+
+    private LruSnapshotFile() {
+        // Unused
+    }
+
+    /**
+     * Writes the records into file
+     *
+     * @param file
+     * @param records
+     * @param keyCodec
+     * @param valueCodec
+     *            null to write keys only
+     * @throws IOException
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be encoded
+     */
+    static <K, V> void write(File file, List<Record<K, V>> records, InterfaceLruCodec<K> keyCodec,
+            InterfaceLruCodec<V> valueCodec) throws IOException, InvalidParseOperationException {
+        final File temporary = new File(file.getPath() + ".tmp");
+        final CRC32 crc = new CRC32();
+        final DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)), crc));
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeBoolean(valueCodec != null);
+            for (final Record<K, V> record : records) {
+                final byte[] key = keyCodec.encode(record.key);
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeLong(record.expirationTime);
+                if (valueCodec != null) {
+                    final byte[] value = valueCodec.encode(record.value);
+                    output.writeInt(value.length);
+                    output.write(value);
+                }
+            }
+            output.writeInt(END);
+            output.writeInt(records.size());
+            // the CRC covers all previous bytes
+            output.writeLong(crc.getValue());
+        } finally {
+            output.close();
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the records of file, skipping the expired ones
+     *
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     *            null to read keys only (values being null in records, as when the file has no
+     *            values)
+     * @return the records in LRU order
+     * @throws IOException
+     *             if the file is not a valid snapshot
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be decoded
+     */
+    static <K, V> List<Record<K, V>> read(File file, InterfaceLruCodec<K> keyCodec,
+            InterfaceLruCodec<V> valueCodec) throws IOException, InvalidParseOperationException {
+        return decode(readEncoded(file), keyCodec, valueCodec);
+    }
+
+    /**
+     * Reads the encoded records of file, skipping the expired ones
+     *
+     * @param file
+     * @return the records in LRU order, values being null if the file has no values
+     * @throws IOException
+     *             if the file is not a valid snapshot
+     */
+    static List<Record<byte[], byte[]>> readEncoded(File file) throws IOException {
+        final List<Record<byte[], byte[]>> records = new ArrayList<Record<byte[], byte[]>>();
+        final CRC32 crc = new CRC32();
+        final DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc));
+        try {
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                throw new IOException("Not a cache snapshot: " + file);
+            }
+            final boolean withValues = input.readBoolean();
+            final long fileLength = file.length();
+            final long now = System.currentTimeMillis();
+            int nb = 0;
+            int keyLength;
+            while ((keyLength = input.readInt()) != END) {
+                final byte[] key = readBytes(input, keyLength, fileLength);
+                final long expirationTime = input.readLong();
+                byte[] value = null;
+                if (withValues) {
+                    value = readBytes(input, input.readInt(), fileLength);
+                }
+                nb++;
+                if (expirationTime > now) {
+                    records.add(new Record<byte[], byte[]>(key, value, expirationTime));
+                }
+            }
+            if (input.readInt() != nb) {
+                throw new IOException("Corrupted cache snapshot: " + file);
+            }
+            final long expected = crc.getValue();
+            if (input.readLong() != expected) {
+                throw new IOException("Corrupted cache snapshot: " + file);
+            }
+        } finally {
+            input.close();
+        }
+        return records;
+    }
+
+    /**
+     * Decodes the encoded records
+     *
+     * @param records
+     * @param keyCodec
+     * @param valueCodec
+     *            null to decode keys only
+     * @return the decoded records
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be decoded
+     */
+    static <K, V> List<Record<K, V>> decode(List<Record<byte[], byte[]>> records, InterfaceLruCodec<K> keyCodec,
+            InterfaceLruCodec<V> valueCodec) throws InvalidParseOperationException {
+        final List<Record<K, V>> decoded = new ArrayList<Record<K, V>>(records.size());
+        for (final Record<byte[], byte[]> record : records) {
+            decoded.add(new Record<K, V>(keyCodec.decode(record.key),
+                    record.value != null && valueCodec != null ? valueCodec.decode(record.value) : null,
+                    record.expirationTime));
+        }
+        return decoded;
+    }
+
+    private static byte[] readBytes(DataInputStream input, int length, long fileLength) throws IOException {
+        if (length < 0 || length > fileLength) {
+            throw new IOException("Corrupted cache snapshot");
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * One cache entry of a snapshot
+     */
+    static final class Record<K, V> {
+        final K key;
+
+        final V value;
+
+        final long expirationTime;
+
+        Record(K key, V value, long expirationTime) {
+            this.key = key;
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Threadsafe statistics recorder of a cache
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+final class LruStatsCounter {
+    private final LruStripedCounter hitCount = new LruStripedCounter();
+
+    private final LruStripedCounter missCount = new LruStripedCounter();
+
+    private final LruStripedCounter loadSuccessCount = new LruStripedCounter();
+
+    private final LruStripedCounter loadFailureCount = new LruStripedCounter();
+
+    private final LruStripedCounter totalLoadTime = new LruStripedCounter();
+
+    private final LruStripedCounter[] evictionCounts;
+
+    LruStatsCounter() {
+        evictionCounts = new LruStripedCounter[LruRemovalCause.values().length];
+        for (int i = 0; i < evictionCounts.length; i++) {
+            evictionCounts[i] = new LruStripedCounter();
+        }
+    }
+
+    /**
+     * 
+     * @param count
+     *            number of hits
+     */
+    void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    /**
+     * 
+     * @param count
+     *            number of misses
+     */
+    void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    /**
+     * 
+     * @param loadTime
+     *            time spent in the callback in nanoseconds
+     */
+    void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * 
+     * @param loadTime
+     *            time spent in the callback in nanoseconds
+     */
+    void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * 
+     * @param cause
+     * @param count
+     *            number of evicted entries
+     */
+    void recordEvictions(LruRemovalCause cause, int count) {
+        evictionCounts[cause.ordinal()].add(count);
+    }
+
+    /**
+     * 
+     * @return a snapshot of the current statistics
+     */
+    LruCacheStats snapshot() {
+        final long[] evictions = new long[evictionCounts.length];
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = evictionCounts[i].sum();
+        }
+        return new LruCacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(),
+                loadFailureCount.sum(), totalLoadTime.sum(), evictions);
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cells (selected by thread) to limit contention between threads
+ * updating it concurrently. Each cell is padded to its own cache line.
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+final class LruStripedCounter {
+    /**
+     * Number of longs between two cells (64 bytes)
+     */
+    private static final int PADDING = 8;
+
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        final int target = Runtime.getRuntime().availableProcessors() * 2;
+        while (stripes < target && stripes < 64) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static final int index() {
+        final long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+    }
+
+    /**
+     * 
+     * @param value
+     *            the value to add
+     */
+    void add(long value) {
+        cells.getAndAdd(index() * PADDING, value);
+    }
+
+    /**
+     * Increments the counter
+     */
+    void increment() {
+        cells.getAndIncrement(index() * PADDING);
+    }
+
+    /**
+     * The sum is not an atomic snapshot if updates occur concurrently
+     * 
+     * @return the current sum
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timer wheel indexing the keys of a cache by expiration time, so that scheduling,
+ * rescheduling and descheduling a key are O(1) and expiring keys is amortized O(1) per key.
+ * 
+ * Each level is a ring of buckets, each bucket spanning a power of 2 milliseconds (about 1 s, 1
+ * min, 1 h, 18 h and 12 days): a key is placed in the bucket of the finest level covering its
+ * delay, and cascades to finer levels when its bucket expires before itself. The current finest
+ * bucket is always checked, so that keys are expired exactly at their expiration time.
+ * 
+ * A key scheduled with its cache entry is only expired once the entry itself is: if the entry was
+ * given a later expiration time meanwhile, the key is rescheduled to it.
+ * 
+ * Not threadsafe: the owner must synchronize the calls.
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ */
+final class LruTimerWheel<K> {
+    private static final int[] BUCKETS = {
+        64, 64, 16, 16, 1
+    };
+
+    private static final int[] SHIFTS = {
+        10, 16, 22, 26, 30
+    };
+
+    private final Node<K>[][] wheel;
+
+    private final Map<K, Node<K>> nodes = new HashMap<K, Node<K>>();
+
+    private long currentTime;
+
+    /**
+     * 
+     * @param now
+     *            current time in milliseconds
+     */
+    LruTimerWheel(long now) {
+        @SuppressWarnings("unchecked")
+        final Node<K>[][] levels = (Node<K>[][]) new Node<?>[BUCKETS.length][];
+        for (int level = 0; level < BUCKETS.length; level++) {
+            @SuppressWarnings("unchecked")
+            final Node<K>[] buckets = (Node<K>[]) new Node<?>[BUCKETS[level]];
+            for (int i = 0; i < BUCKETS[level]; i++) {
+                buckets[i] = new Node<K>(null, 0, 0);
+            }
+            levels[level] = buckets;
+        }
+        wheel = levels;
+        currentTime = now;
+    }
+
+    /**
+     * Schedules (or reschedules) the key
+     * 
+     * @param key
+     * @param expirationTime
+     * @param ttl
+     *            the time to live of the key, kept for expire after access
+     */
+    void schedule(K key, long expirationTime, long ttl) {
+        schedule(key, null, expirationTime, ttl);
+    }
+
+    /**
+     * Schedules (or reschedules) the key at the expiration time of its entry
+     * 
+     * @param key
+     * @param entry
+     * @param ttl
+     *            the time to live of the key, kept for expire after access
+     */
+    void schedule(K key, InterfaceLruCacheEntry<?> entry, long ttl) {
+        schedule(key, entry, entry.getExpirationTime(), ttl);
+    }
+
+    private void schedule(K key, InterfaceLruCacheEntry<?> entry, long expirationTime, long ttl) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<K>(key, expirationTime, ttl);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+            node.expirationTime = expirationTime;
+            node.ttl = ttl;
+        }
+        node.entry = entry;
+        link(node);
+    }
+
+    /**
+     * Reschedules the key if scheduled, keeping its ttl
+     * 
+     * @param key
+     * @param expirationTime
+     */
+    void reschedule(K key, long expirationTime) {
+        final Node<K> node = nodes.get(key);
+        if (node != null) {
+            node.unlink();
+            node.expirationTime = expirationTime;
+            link(node);
+        }
+    }
+
+    /**
+     * 
+     * @param key
+     * @return the ttl of the key or -1 if not scheduled
+     */
+    long getTtl(K key) {
+        final Node<K> node = nodes.get(key);
+        return node == null ? -1 : node.ttl;
+    }
+
+    /**
+     * Removes the key if scheduled
+     * 
+     * @param key
+     */
+    void deschedule(K key) {
+        final Node<K> node = nodes.remove(key);
+        if (node != null) {
+            node.unlink();
+        }
+    }
+
+    /**
+     * Removes all keys
+     */
+    void clear() {
+        for (final Node<K> node : nodes.values()) {
+            node.unlink();
+        }
+        nodes.clear();
+    }
+
+    /**
+     * 
+     * @return the number of scheduled keys
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Advances the wheel to now, descheduling the expired keys (whose expiration time is before
+     * now, as for a cache entry)
+     * 
+     * @param now
+     * @return the keys expired at now (in no particular order)
+     */
+    List<K> advance(long now) {
+        final List<K> expired = new ArrayList<K>();
+        final long previousTime = currentTime;
+        if (now <= previousTime) {
+            return expired;
+        }
+        currentTime = now;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            final long previousTicks = previousTime >>> SHIFTS[level];
+            final long currentTicks = now >>> SHIFTS[level];
+            if (currentTicks == previousTicks) {
+                if (level == 0) {
+                    // keys expiring within the current finest bucket
+                    expire(0, currentTicks, 0, now, expired);
+                }
+                break;
+            }
+            expire(level, previousTicks, currentTicks - previousTicks, now, expired);
+        }
+        return expired;
+    }
+
+    /**
+     * Empties the buckets of level between previousTicks and previousTicks + delta, expiring their
+     * nodes or cascading them to a finer level
+     */
+    private void expire(int level, long previousTicks, long delta, long now, List<K> expired) {
+        final Node<K>[] buckets = wheel[level];
+        final int mask = buckets.length - 1;
+        final long steps = Math.min(delta + 1, buckets.length);
+        for (long i = 0; i < steps; i++) {
+            final Node<K> sentinel = buckets[(int) ((previousTicks + i) & mask)];
+            Node<K> node = sentinel.next;
+            sentinel.next = sentinel;
+            sentinel.previous = sentinel;
+            while (node != sentinel) {
+                final Node<K> next = node.next;
+                node.next = null;
+                node.previous = null;
+                if (node.entry != null) {
+                    node.expirationTime = node.entry.getExpirationTime();
+                }
+                if (node.expirationTime < now) {
+                    nodes.remove(node.key);
+                    expired.add(node.key);
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private void link(Node<K> node) {
+        final Node<K> sentinel = findBucket(node.expirationTime);
+        node.previous = sentinel.previous;
+        node.next = sentinel;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    private Node<K> findBucket(long expirationTime) {
+        // an already expired key goes into the current bucket
+        final long time = Math.max(expirationTime, currentTime);
+        final long duration = time - currentTime;
+        final int last = SHIFTS.length - 1;
+        for (int level = 0; level < last; level++) {
+            if (duration < 1L << SHIFTS[level + 1]) {
+                final long ticks = time >>> SHIFTS[level];
+                return wheel[level][(int) (ticks & (BUCKETS[level] - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    /**
+     * Scheduled key, linked within its bucket (a bucket being a circular list around a sentinel)
+     */
+    private static final class Node<K> {
+        private final K key;
+
+        private long expirationTime;
+
+        private long ttl;
+
+        private InterfaceLruCacheEntry<?> entry;
+
+        private Node<K> previous;
+
+        private Node<K> next;
+
+        private Node(K key, long expirationTime, long ttl) {
+            this.key = key;
+            this.expirationTime = expirationTime;
+            this.ttl = ttl;
+            previous = this;
+            next = this;
+        }
+
+        private void unlink() {
+            if (next != null) {
+                previous.next = next;
+                next.previous = previous;
+                previous = null;
+                next = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Threadsafe synchronized implementation of LruCache storing the values as bytes in off-heap
+ * slabs (direct ByteBuffers), only the index (key to slab, offset and length) remaining on heap.
+ * 
+ * Values are returned as read-only ByteBuffer views over the slab, without any copy. Slabs are
+ * filled sequentially and never overwritten: when no slab is left, the slab with the most freed
+ * bytes is compacted into a new one (or, if there is not enough freed space, least recently used
+ * entries are evicted), so that a view obtained before remains valid as long as it is referenced.
+ * 
+ * Note that at most one more slab than the maximum can be allocated during a compaction, and that
+ * a value larger than a slab is not cached.
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ */
+public class OffHeapLruCache<K> extends AbstractLruCache<K, ByteBuffer> {
+    /**
+     * Default slab size (8 MB)
+     */
+    public static final int DEFAULT_SLAB_SIZE = 8 * 1024 * 1024;
+
+    private final LinkedHashMap<K, OffHeapCacheEntry> cacheMap;
+
+    private final int capacity;
+
+    private final int slabSize;
+
+    private final int maxSlabs;
+
+    private final List<Slab> slabs;
+
+    private Slab current;
+
+    private long liveBytes;
+
+    /**
+     * Creates new OffHeapLruCache
+     * 
+     * @param capacity
+     *            max number of entries
+     * @param ttl
+     *            time to live in milliseconds
+     * @param maximumBytes
+     *            max off-heap memory used by slabs
+     * @param slabSize
+     *            size of one slab, so the max size of one value
+     * @throws IllegalArgumentException
+     *             if capacity, ttl or slabSize is not positive or if maximumBytes is less than
+     *             slabSize
+     */
+    public OffHeapLruCache(int capacity, long ttl, long maximumBytes, int slabSize) {
+        super(ttl);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (slabSize <= 0) {
+            throw new IllegalArgumentException("slabSize must be positive");
+        }
+        if (maximumBytes < slabSize) {
+            throw new IllegalArgumentException("maximumBytes must be at least slabSize");
+        }
+        this.capacity = capacity;
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, maximumBytes / slabSize);
+        cacheMap = new LinkedHashMap<K, OffHeapCacheEntry>(
+                SynchronizedLruCache.DEFAULT_INITIAL_CAPACITY,
+                SynchronizedLruCache.DEFAULT_LOAD_FACTOR, true);
+        slabs = new ArrayList<Slab>();
+    }
+
+    /**
+     * Creates new OffHeapLruCache with DEFAULT_SLAB_SIZE
+     * 
+     * @param capacity
+     *            max number of entries
+     * @param ttl
+     *            time to live in milliseconds
+     * @param maximumBytes
+     *            max off-heap memory used by slabs
+     */
+    public OffHeapLruCache(int capacity, long ttl, long maximumBytes) {
+        this(capacity, ttl, maximumBytes, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Removes all entries from cache, notifying them as EXPLICIT removals
+     */
+    public void clear() {
+        synchronized (this) {
+            for (final Entry<K, OffHeapCacheEntry> entry : cacheMap.entrySet()) {
+                notifyRemoval(entry.getKey(), entry.getValue(), LruRemovalCause.EXPLICIT);
+            }
+            cacheMap.clear();
+            slabs.clear();
+            current = null;
+            liveBytes = 0;
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public ByteBuffer get(K key) {
+        final ByteBuffer value;
+        synchronized (this) {
+            value = super.get(key);
+        }
+        dispatchRemovals();
+        return value;
+    }
+
+    @Override
+    protected void getAllPresent(Collection<? extends K> keys, Map<K, ByteBuffer> result, Set<K> misses) {
+        synchronized (this) {
+            super.getAllPresent(keys, result, misses);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends ByteBuffer> entries, long ttl) {
+        synchronized (this) {
+            for (final Entry<? extends K, ? extends ByteBuffer> entry : entries.entrySet()) {
+                put(entry.getKey(), entry.getValue(), ttl);
+            }
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        synchronized (this) {
+            super.removeAll(keys);
+        }
+        dispatchRemovals();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMaximumWeight() {
+        return (long) maxSlabs * slabSize;
+    }
+
+    public synchronized long getWeightedSize() {
+        return liveBytes;
+    }
+
+    /**
+     * 
+     * @return the number of off-heap bytes currently allocated in slabs
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    @Override
+    protected InterfaceLruCacheEntry<ByteBuffer> getEntry(K key) {
+        return cacheMap.get(key);
+    }
+
+    /**
+     * Synchronized since looking up the access ordered map relinks it
+     */
+    @Override
+    public synchronized void updateTtl(K key) {
+        super.updateTtl(key);
+    }
+
+    @Override
+    protected synchronized InterfaceLruCacheEntry<ByteBuffer> getEntryToRefresh(K key, long timeRef) {
+        return super.getEntryToRefresh(key, timeRef);
+    }
+
+    @Override
+    protected boolean replaceValue(K key, InterfaceLruCacheEntry<ByteBuffer> expected,
+            ByteBuffer value, long ttl) {
+        if (value.remaining() > slabSize) {
+            return false;
+        }
+        final boolean replaced;
+        synchronized (this) {
+            replaced = super.replaceValue(key, expected, value, ttl);
+        }
+        dispatchRemovals();
+        return replaced;
+    }
+
+    public synchronized int size() {
+        return cacheMap.size();
+    }
+
+    /**
+     * Puts a copy of the remaining bytes of value into cache. Does nothing (except removing the
+     * previous value) if the value is larger than a slab.
+     */
+    @Override
+    public void put(K key, ByteBuffer value, long ttl) {
+        if (value != null && value.remaining() > slabSize) {
+            remove(key);
+            return;
+        }
+        synchronized (this) {
+            super.put(key, value, ttl);
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * Puts a copy of value under key into cache. Default TTL is used
+     * 
+     * @param key
+     * @param value
+     */
+    public void put(K key, byte[] value) {
+        put(key, value, getTtl());
+    }
+
+    /**
+     * Puts a copy of value under key into cache with desired TTL
+     * 
+     * @param key
+     * @param value
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public void put(K key, byte[] value, long ttl) {
+        if (value != null) {
+            put(key, ByteBuffer.wrap(value), ttl);
+        }
+    }
+
+    /**
+     * Values being held off heap, only STRONG is supported
+     */
+    @Override
+    public void setReferenceType(LruReferenceType referenceType) {
+        if (referenceType != LruReferenceType.STRONG) {
+            throw new IllegalArgumentException("Off heap cache only supports strong references");
+        }
+    }
+
+    @Override
+    protected long weigh(K key, ByteBuffer value) {
+        return value.remaining();
+    }
+
+    @Override
+    protected InterfaceLruCacheEntry<ByteBuffer> createEntry(K key, ByteBuffer value, long ttl,
+            long weight) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        final int length = value.remaining();
+        final Slab slab = allocate(length);
+        final ByteBuffer target = slab.buffer.duplicate();
+        target.position(slab.position);
+        target.put(value.duplicate());
+        final OffHeapCacheEntry entry = new OffHeapCacheEntry(slab, slab.position, length, ttl);
+        slab.position += length;
+        slab.liveBytes += length;
+        liveBytes += length;
+        return entry;
+    }
+
+    @Override
+    protected void putEntry(K key, InterfaceLruCacheEntry<ByteBuffer> entry) {
+        final OffHeapCacheEntry old = cacheMap.put(key, (OffHeapCacheEntry) entry);
+        if (old != null) {
+            release(old);
+            notifyRemoval(key, old, LruRemovalCause.REPLACED);
+        }
+        if (cacheMap.size() > capacity) {
+            evictEldest();
+        }
+    }
+
+    public ByteBuffer remove(K key) {
+        final OffHeapCacheEntry entry;
+        synchronized (this) {
+            entry = cacheMap.remove(key);
+            if (entry != null) {
+                release(entry);
+                notifyRemoval(key, entry, LruRemovalCause.EXPLICIT);
+            }
+        }
+        dispatchRemovals();
+        if (entry != null) {
+            return entry.getValue();
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean removeEntry(K key, InterfaceLruCacheEntry<ByteBuffer> expected) {
+        if (cacheMap.get(key) == expected) {
+            release(cacheMap.remove(key));
+            return true;
+        }
+        return false;
+    }
+
+    public int forceClearOldest() {
+        int nb = 0;
+        synchronized (this) {
+            final long timeRef = System.currentTimeMillis();
+            final Iterator<Entry<K, OffHeapCacheEntry>> iterator = cacheMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Entry<K, OffHeapCacheEntry> entry = iterator.next();
+                if (!entry.getValue().isStillValid(timeRef)) {
+                    iterator.remove();
+                    release(entry.getValue());
+                    notifyRemoval(entry.getKey(), entry.getValue(), LruRemovalCause.EXPIRED);
+                    nb++;
+                }
+            }
+            recordEvictions(LruRemovalCause.EXPIRED, nb);
+        }
+        dispatchRemovals();
+        return nb;
+    }
+
+    /**
+     * Finds a slab with enough room for length bytes, allocating, compacting or evicting as
+     * needed
+     * 
+     * @param length
+     * @return the slab to write into
+     */
+    private Slab allocate(int length) {
+        while (true) {
+            if (current != null && slabSize - current.position >= length) {
+                return current;
+            }
+            if (slabs.size() < maxSlabs) {
+                current = new Slab(slabSize);
+                slabs.add(current);
+                continue;
+            }
+            if (cacheMap.isEmpty()) {
+                // only dead bytes left
+                slabs.clear();
+                current = null;
+                continue;
+            }
+            Slab victim = null;
+            for (final Slab slab : slabs) {
+                if (victim == null || slab.deadBytes() > victim.deadBytes()) {
+                    victim = slab;
+                }
+            }
+            if (victim.deadBytes() >= length) {
+                compact(victim);
+            } else {
+                evictEldest();
+            }
+        }
+    }
+
+    /**
+     * Moves all live values of victim into a new slab which becomes the current one
+     * 
+     * @param victim
+     */
+    private void compact(Slab victim) {
+        final Slab fresh = new Slab(slabSize);
+        for (final OffHeapCacheEntry entry : cacheMap.values()) {
+            if (entry.slab == victim) {
+                final ByteBuffer source = victim.buffer.duplicate();
+                source.limit(entry.offset + entry.length);
+                source.position(entry.offset);
+                final ByteBuffer target = fresh.buffer.duplicate();
+                target.position(fresh.position);
+                target.put(source);
+                entry.slab = fresh;
+                entry.offset = fresh.position;
+                fresh.position += entry.length;
+                fresh.liveBytes += entry.length;
+            }
+        }
+        slabs.remove(victim);
+        slabs.add(fresh);
+        current = fresh;
+    }
+
+    private void evictEldest() {
+        final Iterator<Entry<K, OffHeapCacheEntry>> iterator = cacheMap.entrySet().iterator();
+        if (iterator.hasNext()) {
+            final Entry<K, OffHeapCacheEntry> entry = iterator.next();
+            iterator.remove();
+            release(entry.getValue());
+            recordEvictions(LruRemovalCause.SIZE, 1);
+            notifyRemoval(entry.getKey(), entry.getValue(), LruRemovalCause.SIZE);
+        }
+    }
+
+    private void release(OffHeapCacheEntry entry) {
+        entry.slab.liveBytes -= entry.length;
+        liveBytes -= entry.length;
+    }
+
+    /**
+     * One direct memory region, filled sequentially
+     */
+    private static final class Slab {
+        private final ByteBuffer buffer;
+
+        private final ByteBuffer readOnly;
+
+        private int position;
+
+        private int liveBytes;
+
+        private Slab(int size) {
+            buffer = ByteBuffer.allocateDirect(size);
+            readOnly = buffer.asReadOnlyBuffer();
+        }
+
+        private int deadBytes() {
+            return position - liveBytes;
+        }
+    }
+
+    /**
+     * Index entry pointing to the bytes of the value within a slab
+     */
+    private static final class OffHeapCacheEntry implements InterfaceLruCacheEntry<ByteBuffer> {
+        private Slab slab;
+
+        private int offset;
+
+        private final int length;
+
+        private final long creationTime;
+
+        private long expirationTime;
+
+        private OffHeapCacheEntry(Slab slab, int offset, int length, long ttl) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            creationTime = System.currentTimeMillis();
+            expirationTime = creationTime + ttl;
+        }
+
+        /**
+         * Returns a read-only view over the value if entry is valid, null otherwise.
+         */
+        public ByteBuffer getValue() {
+            if (System.currentTimeMillis() > expirationTime) {
+                return null;
+            }
+            return peekValue();
+        }
+
+        /**
+         * Returns a read-only view over the value, slabs being never overwritten
+         */
+        public ByteBuffer peekValue() {
+            final ByteBuffer view = slab.readOnly.duplicate();
+            view.limit(offset + length);
+            view.position(offset);
+            return view.slice();
+        }
+
+        public boolean isStillValid(long timeRef) {
+            return (timeRef <= expirationTime);
+        }
+
+        public boolean resetTime(long ttl) {
+            expirationTime = System.currentTimeMillis() + ttl;
+            return true;
+        }
+
+        public long getWeight() {
+            return length;
+        }
+
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+
+        public long getCreationTime() {
+            return creationTime;
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Partitioned implementation of LruCache, typically one partition per tenant, so that one tenant
+ * cannot evict the working set of the others.
+ * 
+ * Each partition is a SynchronizedLruCache with its own lock, selected from the key by a
+ * partitioner, and has a capacity quota and optionally a weight quota. A partition may borrow the
+ * capacity (and weight) left unused by the others: the cache is only full when the sum of the
+ * partitions reaches the sum of the quotas. Then the partition putting the entry evicts its own
+ * oldest entry if it is over its quota, otherwise the partition borrowing the most gives back its
+ * oldest entry.
+ * 
+ * No global lock is held, so that quotas are enforced after each put and may be exceeded
+ * transiently under concurrent puts. The totals are kept in atomic counters updated by the
+ * partitions, so that the partitions are only scanned when the cache is over its capacity or
+ * weight. Statistics are kept per partition.
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ */
+public class PartitionedLruCache<K, V> implements InterfaceLruCache<K, V> {
+    private final InterfaceLruPartitioner<? super K> partitioner;
+
+    private final SynchronizedLruCache<K, V>[] partitions;
+
+    private final long[] capacities;
+
+    private final long[] maximumWeights;
+
+    private final int capacity;
+
+    private final long maximumWeight;
+
+    private final AtomicLong totalSize = new AtomicLong();
+
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    /**
+     * Creates new PartitionedLruCache
+     * 
+     * @param partitioner
+     *            selects the partition of a key
+     * @param capacities
+     *            capacity quota of each partition
+     * @param maximumWeights
+     *            weight quota of each partition, null meaning not bounded by weight
+     * @param ttl
+     *            time to live in milliseconds
+     * @param weigher
+     *            the weigher to use, null meaning each entry weighs 1
+     * @throws IllegalArgumentException
+     *             if partitioner is null, if there is no partition, if quotas are not positive
+     *             or if maximumWeights has not the same length as capacities
+     */
+    public PartitionedLruCache(InterfaceLruPartitioner<? super K> partitioner, int[] capacities,
+            long[] maximumWeights, long ttl, InterfaceLruWeigher<? super K, ? super V> weigher) {
+        if (partitioner == null) {
+            throw new IllegalArgumentException("partitioner must not be null");
+        }
+        if (capacities == null || capacities.length == 0) {
+            throw new IllegalArgumentException("capacities must not be empty");
+        }
+        if (maximumWeights != null && maximumWeights.length != capacities.length) {
+            throw new IllegalArgumentException("maximumWeights must have one quota per partition");
+        }
+        this.partitioner = partitioner;
+        this.capacities = new long[capacities.length];
+        long totalCapacity = 0;
+        long totalWeight = 0;
+        for (int i = 0; i < capacities.length; i++) {
+            if (capacities[i] <= 0) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            this.capacities[i] = capacities[i];
+            totalCapacity += capacities[i];
+            if (maximumWeights != null) {
+                if (maximumWeights[i] <= 0) {
+                    throw new IllegalArgumentException("maximumWeight must be positive");
+                }
+                totalWeight += maximumWeights[i];
+            }
+        }
+        if (totalCapacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("total capacity is too large");
+        }
+        capacity = (int) totalCapacity;
+        if (maximumWeights == null) {
+            this.maximumWeights = null;
+            maximumWeight = Long.MAX_VALUE;
+        } else {
+            this.maximumWeights = maximumWeights.clone();
+            maximumWeight = totalWeight;
+        }
+        // each partition may borrow up to the whole cache
+        @SuppressWarnings("unchecked")
+        final SynchronizedLruCache<K, V>[] array =
+                (SynchronizedLruCache<K, V>[]) new SynchronizedLruCache<?, ?>[capacities.length];
+        partitions = array;
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new SynchronizedLruCache<K, V>(capacity, ttl, maximumWeight, weigher) {
+                @Override
+                protected void onResize(int entries, long weight) {
+                    PartitionedLruCache.this.totalSize.addAndGet(entries);
+                    PartitionedLruCache.this.totalWeight.addAndGet(weight);
+                }
+            };
+        }
+    }
+
+    /**
+     * Creates new PartitionedLruCache with the same capacity quota for each partition, not bounded
+     * by weight
+     * 
+     * @param partitioner
+     *            selects the partition of a key
+     * @param partitionCount
+     *            number of partitions
+     * @param capacity
+     *            capacity quota of each partition
+     * @param ttl
+     *            time to live in milliseconds
+     * @throws IllegalArgumentException
+     *             if partitioner is null or partitionCount or capacity is not positive
+     */
+    public PartitionedLruCache(InterfaceLruPartitioner<? super K> partitioner, int partitionCount, int capacity,
+            long ttl) {
+        this(partitioner, fill(partitionCount, capacity), null, ttl, null);
+    }
+
+    private static int[] fill(int partitionCount, int capacity) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("partitionCount must be positive");
+        }
+        final int[] capacities = new int[partitionCount];
+        Arrays.fill(capacities, capacity);
+        return capacities;
+    }
+
+    /**
+     * 
+     * @param key
+     * @return the partition of the key
+     * @throws IllegalArgumentException
+     *             if the partitioner returns an invalid partition
+     */
+    public int getPartition(K key) {
+        final int partition = partitioner.partition(key, partitions.length);
+        if (partition < 0 || partition >= partitions.length) {
+            throw new IllegalArgumentException("Invalid partition " + partition + " for key " + key);
+        }
+        return partition;
+    }
+
+    private SynchronizedLruCache<K, V> partitionOf(K key) {
+        return partitions[getPartition(key)];
+    }
+
+    /**
+     * Evicts entries while the cache is over its capacity or weight, the partition being over its
+     * quota first, then the partition borrowing the most
+     * 
+     * @param partition
+     *            the partition that just grew
+     */
+    private void enforceQuotas(int partition) {
+        for (;;) {
+            int victim = -1;
+            if (totalSize.get() > capacity) {
+                final long[] sizes = new long[partitions.length];
+                for (int i = 0; i < partitions.length; i++) {
+                    sizes[i] = partitions[i].size();
+                }
+                victim = selectVictim(partition, sizes, capacities);
+            } else if (totalWeight.get() > maximumWeight) {
+                final long[] weights = new long[partitions.length];
+                for (int i = 0; i < partitions.length; i++) {
+                    weights[i] = partitions[i].getWeightedSize();
+                }
+                victim = selectVictim(partition, weights, maximumWeights);
+            }
+            if (victim < 0 || !partitions[victim].evictOldest()) {
+                return;
+            }
+        }
+    }
+
+    private static int selectVictim(int partition, long[] used, long[] quotas) {
+        if (used[partition] > quotas[partition]) {
+            return partition;
+        }
+        int victim = -1;
+        long borrowed = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i] - quotas[i] > borrowed) {
+                borrowed = used[i] - quotas[i];
+                victim = i;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Groups the keys by partition
+     * 
+     * @param keys
+     * @return the keys of each partition
+     */
+    private List<List<K>> split(Collection<? extends K> keys) {
+        final List<List<K>> split = new ArrayList<List<K>>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            split.add(new ArrayList<K>());
+        }
+        for (final K key : keys) {
+            split.get(getPartition(key)).add(key);
+        }
+        return split;
+    }
+
+    public void clear() {
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            cache.clear();
+        }
+    }
+
+    public int forceClearOldest() {
+        int nb = 0;
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            nb += cache.forceClearOldest();
+        }
+        return nb;
+    }
+
+    public boolean contains(K key) {
+        return partitionOf(key).contains(key);
+    }
+
+    public V get(K key) {
+        return partitionOf(key).get(key);
+    }
+
+    public V get(K key, Callable<V> callback) throws Exception {
+        return get(key, callback, getTtl());
+    }
+
+    public V get(K key, Callable<V> callback, long ttl) throws Exception {
+        final int partition = getPartition(key);
+        final V value = partitions[partition].get(key, callback, ttl);
+        enforceQuotas(partition);
+        return value;
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        final List<List<K>> split = split(keys);
+        for (int i = 0; i < partitions.length; i++) {
+            if (!split.get(i).isEmpty()) {
+                result.putAll(partitions[i].getAll(split.get(i)));
+            }
+        }
+        return result;
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader) throws Exception {
+        return getAll(keys, loader, getTtl());
+    }
+
+    public Map<K, V> getAll(Collection<? extends K> keys, InterfaceLruBatchLoader<K, V> loader, long ttl)
+            throws Exception {
+        final Map<K, V> result = new LinkedHashMap<K, V>();
+        final List<List<K>> split = split(keys);
+        for (int i = 0; i < partitions.length; i++) {
+            if (!split.get(i).isEmpty()) {
+                result.putAll(partitions[i].getAll(split.get(i), loader, ttl));
+                enforceQuotas(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 
+     * @return the sum of the capacity quotas
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 
+     * @return the sum of the weight quotas
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getWeightedSize() {
+        return totalWeight.get();
+    }
+
+    public int size() {
+        int size = 0;
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    public long getTtl() {
+        return partitions[0].getTtl();
+    }
+
+    public void setNewTtl(long ttl) {
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            cache.setNewTtl(ttl);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, getTtl());
+    }
+
+    public void put(K key, V value, long ttl) {
+        final int partition = getPartition(key);
+        partitions[partition].put(key, value, ttl);
+        enforceQuotas(partition);
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        putAll(entries, getTtl());
+    }
+
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        final List<Map<K, V>> split = new ArrayList<Map<K, V>>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            split.add(new LinkedHashMap<K, V>());
+        }
+        for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            split.get(getPartition(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (!split.get(i).isEmpty()) {
+                partitions[i].putAll(split.get(i), ttl);
+                enforceQuotas(i);
+            }
+        }
+    }
+
+    public void removeAll(Collection<? extends K> keys) {
+        final List<List<K>> split = split(keys);
+        for (int i = 0; i < partitions.length; i++) {
+            if (!split.get(i).isEmpty()) {
+                partitions[i].removeAll(split.get(i));
+            }
+        }
+    }
+
+    public V remove(K key) {
+        return partitionOf(key).remove(key);
+    }
+
+    public void setRecordStats(boolean recordStats) {
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            cache.setRecordStats(recordStats);
+        }
+    }
+
+    /**
+     * 
+     * @return the sum of the statistics of all partitions
+     */
+    public LruCacheStats getStats() {
+        LruCacheStats stats = partitions[0].getStats();
+        for (int i = 1; i < partitions.length; i++) {
+            stats = stats.plus(partitions[i].getStats());
+        }
+        return stats;
+    }
+
+    public void addRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener) {
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            cache.addRemovalListener(listener);
+        }
+    }
+
+    public void removeRemovalListener(InterfaceLruRemovalListener<? super K, ? super V> listener) {
+        for (final SynchronizedLruCache<K, V> cache : partitions) {
+            cache.removeRemovalListener(listener);
+        }
+    }
+
+    public void updateTtl(K key) {
+        partitionOf(key).updateTtl(key);
+    }
+
+    /**
+     * 
+     * @return the number of partitions
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * 
+     * @param partition
+     * @return the capacity quota of the partition
+     */
+    public int getPartitionCapacity(int partition) {
+        return (int) capacities[partition];
+    }
+
+    /**
+     * 
+     * @param partition
+     * @return the weight quota of the partition (Long.MAX_VALUE if not bounded by weight)
+     */
+    public long getPartitionMaximumWeight(int partition) {
+        return maximumWeights == null ? Long.MAX_VALUE : maximumWeights[partition];
+    }
+
+    /**
+     * 
+     * @param partition
+     * @return the number of entries of the partition, possibly over its quota when borrowing
+     */
+    public int getPartitionSize(int partition) {
+        return partitions[partition].size();
+    }
+
+    /**
+     * 
+     * @param partition
+     * @return the total weight of the entries of the partition
+     */
+    public long getPartitionWeightedSize(int partition) {
+        return partitions[partition].getWeightedSize();
+    }
+
+    /**
+     * 
+     * @param partition
+     * @return the statistics of the partition
+     */
+    public LruCacheStats getPartitionStats(int partition) {
+        return partitions[partition].getStats();
+    }
+}
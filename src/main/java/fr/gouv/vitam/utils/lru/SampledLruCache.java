@@ -0,0 +1,345 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate LRU implementation of LruCache, for caches where the exact LRU order does not
+ * matter: reads never lock, only writing a per entry access timestamp (in milliseconds, so that
+ * hot entries are not written on each read), and when the cache is full the least recently
+ * accessed of sampleSize randomly chosen entries is evicted (an expired sampled entry being
+ * evicted first).
+ * 
+ * Reads are wait-free (except when removing an invalid entry), writes are serialized by the cache
+ * lock. With expire after access, readers reset the expiration time of the entry without lock.
+ * The maximum weight is not supported (each entry weighs 1).
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ */
+public class SampledLruCache<K, V> extends AbstractLruCache<K, V> {
+    /**
+     * Default number of entries sampled per eviction
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 5;
+
+    private final ConcurrentHashMap<K, Node<K, V>> cacheMap;
+
+    private final int capacity;
+
+    private final int sampleSize;
+
+    /**
+     * Nodes by index, so that they can be sampled (guarded by the cache lock)
+     */
+    private final Node<K, V>[] nodes;
+
+    private int size;
+
+    /**
+     * Creates new SampledLruCache
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param sampleSize
+     *            number of entries sampled per eviction (higher is closer to LRU but slower)
+     * @throws IllegalArgumentException
+     *             if capacity, ttl or sampleSize is not positive
+     */
+    public SampledLruCache(int capacity, long ttl, int sampleSize) {
+        super(ttl);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be positive");
+        }
+        this.capacity = capacity;
+        this.sampleSize = sampleSize;
+        cacheMap = new ConcurrentHashMap<K, Node<K, V>>(Math.min(capacity, 1 << 16));
+        @SuppressWarnings("unchecked")
+        final Node<K, V>[] array = (Node<K, V>[]) new Node<?, ?>[capacity];
+        nodes = array;
+    }
+
+    /**
+     * Creates new SampledLruCache with DEFAULT_SAMPLE_SIZE
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public SampledLruCache(int capacity, long ttl) {
+        this(capacity, ttl, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Wait-free: only marks the access time of the entry
+     */
+    @Override
+    protected InterfaceLruCacheEntry<V> getEntry(K key) {
+        final Node<K, V> node = cacheMap.get(key);
+        if (node == null) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        // hot entries are written at most once per millisecond
+        if (node.accessTime != now) {
+            node.accessTime = now;
+        }
+        return node.entry;
+    }
+
+    @Override
+    public V get(K key) {
+        final V value = super.get(key);
+        dispatchRemovals();
+        return value;
+    }
+
+    @Override
+    protected void getAllPresent(Collection<? extends K> keys, Map<K, V> result, Set<K> misses) {
+        super.getAllPresent(keys, result, misses);
+        dispatchRemovals();
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        synchronized (this) {
+            drainReferenceQueue();
+            super.put(key, value, ttl);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        synchronized (this) {
+            drainReferenceQueue();
+            super.putAll(entries, ttl);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    protected boolean replaceValue(K key, InterfaceLruCacheEntry<V> expected, V value, long ttl) {
+        final boolean replaced;
+        synchronized (this) {
+            replaced = super.replaceValue(key, expected, value, ttl);
+        }
+        dispatchRemovals();
+        return replaced;
+    }
+
+    /**
+     * Puts entry into cache, while holding the cache lock
+     */
+    @Override
+    protected void putEntry(K key, InterfaceLruCacheEntry<V> entry) {
+        final Node<K, V> node = cacheMap.get(key);
+        if (node != null) {
+            final InterfaceLruCacheEntry<V> previous = node.entry;
+            node.entry = entry;
+            node.accessTime = System.currentTimeMillis();
+            notifyRemoval(key, previous, LruRemovalCause.REPLACED);
+            return;
+        }
+        if (size >= capacity) {
+            evictSample();
+        }
+        final Node<K, V> created = new Node<K, V>(key, entry, size);
+        nodes[size++] = created;
+        cacheMap.put(key, created);
+    }
+
+    /**
+     * Evicts the least recently accessed (or an expired) entry among sampleSize random ones
+     */
+    private void evictSample() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long now = System.currentTimeMillis();
+        Node<K, V> victim = null;
+        for (int i = 0; i < sampleSize; i++) {
+            final Node<K, V> candidate = nodes[random.nextInt(size)];
+            if (!candidate.entry.isStillValid(now)) {
+                removeNode(candidate);
+                recordEvictions(LruRemovalCause.EXPIRED, 1);
+                notifyRemoval(candidate.key, candidate.entry, LruRemovalCause.EXPIRED);
+                return;
+            }
+            if (victim == null || candidate.accessTime < victim.accessTime) {
+                victim = candidate;
+            }
+        }
+        removeNode(victim);
+        recordEvictions(LruRemovalCause.SIZE, 1);
+        notifyRemoval(victim.key, victim.entry, LruRemovalCause.SIZE);
+    }
+
+    /**
+     * Removes node from map and index, moving the last node into its place
+     * 
+     * @param node
+     */
+    private void removeNode(Node<K, V> node) {
+        cacheMap.remove(node.key);
+        final Node<K, V> last = nodes[--size];
+        nodes[node.index] = last;
+        last.index = node.index;
+        nodes[size] = null;
+    }
+
+    @Override
+    public V remove(K key) {
+        Node<K, V> node;
+        synchronized (this) {
+            node = cacheMap.get(key);
+            if (node != null) {
+                removeNode(node);
+                notifyRemoval(key, node.entry, LruRemovalCause.EXPLICIT);
+            }
+        }
+        dispatchRemovals();
+        if (node != null) {
+            return node.entry.getValue();
+        }
+        return null;
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        synchronized (this) {
+            super.removeAll(keys);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    protected boolean removeEntry(K key, InterfaceLruCacheEntry<V> expected) {
+        synchronized (this) {
+            final Node<K, V> node = cacheMap.get(key);
+            if (node != null && node.entry == expected) {
+                removeNode(node);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all entries from cache, notifying them as EXPLICIT removals
+     */
+    @Override
+    public void clear() {
+        synchronized (this) {
+            for (int i = 0; i < size; i++) {
+                notifyRemoval(nodes[i].key, nodes[i].entry, LruRemovalCause.EXPLICIT);
+                nodes[i] = null;
+            }
+            size = 0;
+            cacheMap.clear();
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * Scans all entries, removing the expired ones
+     */
+    public int forceClearOldest() {
+        int nb = 0;
+        synchronized (this) {
+            drainReferenceQueue();
+            final long now = System.currentTimeMillis();
+            int i = 0;
+            while (i < size) {
+                final Node<K, V> node = nodes[i];
+                if (node.entry.isStillValid(now)) {
+                    i++;
+                } else {
+                    // the last node moves into i
+                    removeNode(node);
+                    notifyRemoval(node.key, node.entry, LruRemovalCause.EXPIRED);
+                    nb++;
+                }
+            }
+            recordEvictions(LruRemovalCause.EXPIRED, nb);
+        }
+        dispatchRemovals();
+        return nb;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 
+     * @return the number of entries sampled per eviction
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public long getMaximumWeight() {
+        return Long.MAX_VALUE;
+    }
+
+    public long getWeightedSize() {
+        return size();
+    }
+
+    public int size() {
+        return cacheMap.size();
+    }
+
+    /**
+     * Cache entry with its last access time and its index
+     */
+    private static final class Node<K, V> {
+        private final K key;
+
+        private volatile InterfaceLruCacheEntry<V> entry;
+
+        /**
+         * Written without lock by readers
+         */
+        private volatile long accessTime;
+
+        /**
+         * Guarded by the cache lock
+         */
+        private int index;
+
+        private Node(K key, InterfaceLruCacheEntry<V> entry, int index) {
+            this.key = key;
+            this.entry = entry;
+            this.index = index;
+            accessTime = System.currentTimeMillis();
+        }
+    }
+}
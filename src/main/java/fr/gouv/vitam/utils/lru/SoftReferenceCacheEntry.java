@@ -0,0 +1,109 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+
+/**
+ * Cache entry holding its value through a SoftReference, so that the value may be reclaimed by the
+ * garbage collector when memory is low (before an OutOfMemoryError). The entry is then enqueued
+ * in the cache reference queue to be purged.
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+class SoftReferenceCacheEntry<K, V> extends SoftReference<V> implements InterfaceKeyedCacheEntry<K, V> {
+    private final K key;
+
+    private final long weight;
+
+    private final long creationTime;
+
+    private volatile long expirationTime;
+
+    /**
+     * Creates SoftReferenceCacheEntry with desired ttl
+     * 
+     * @param key
+     * @param value
+     * @param queue
+     *            the queue where the entry is enqueued once its value is reclaimed
+     * @param ttl
+     *            time to live in milliseconds
+     * @param weight
+     *            weight of the entry
+     * @throws IllegalArgumentException
+     *             if ttl is not positive
+     */
+    SoftReferenceCacheEntry(K key, V value, ReferenceQueue<? super V> queue, long ttl, long weight) {
+        super(value, queue);
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.key = key;
+        this.weight = weight;
+        creationTime = System.currentTimeMillis();
+        expirationTime = creationTime + ttl;
+    }
+
+    /**
+     * Returns value if entry is valid, null otherwise.
+     * 
+     * Entry is invalid if it's expired or if its value was reclaimed
+     * 
+     * @return value if entry is valid
+     */
+    public V getValue() {
+        if (System.currentTimeMillis() > expirationTime) {
+            return null;
+        } else {
+            return get();
+        }
+    }
+
+    public boolean isStillValid(long timeRef) {
+        return (timeRef <= expirationTime) && get() != null;
+    }
+
+    public boolean resetTime(long ttl) {
+        expirationTime = System.currentTimeMillis() + ttl;
+        return true;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public V peekValue() {
+        return get();
+    }
+
+    public K getKey() {
+        return key;
+    }
+}
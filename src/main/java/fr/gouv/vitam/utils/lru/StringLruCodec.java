@@ -0,0 +1,38 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import fr.gouv.vitam.utils.FileUtil;
+
+/**
+ * UTF-8 codec for String
+ * 
+ * @author Frederic Bregier
+ * 
+ */
+public class StringLruCodec implements InterfaceLruCodec<String> {
+
+    public byte[] encode(String object) {
+        return object.getBytes(FileUtil.UTF8);
+    }
+
+    public String decode(byte[] bytes) {
+        return new String(bytes, FileUtil.UTF8);
+    }
+}
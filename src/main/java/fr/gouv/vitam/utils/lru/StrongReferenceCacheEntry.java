@@ -26,7 +26,14 @@ package fr.gouv.vitam.utils.lru;
 class StrongReferenceCacheEntry<V> implements InterfaceLruCacheEntry<V> {
     private final V value;
 
-    private long expirationTime;
+    private final long weight;
+
+    private final long creationTime;
+
+    /**
+     * Volatile since lock-free readers may reset it (expire after access)
+     */
+    private volatile long expirationTime;
 
     /**
      * Creates StrongReferencyCacheEntry with desired ttl
@@ -34,15 +41,19 @@ class StrongReferenceCacheEntry<V> implements InterfaceLruCacheEntry<V> {
      * @param value
      * @param ttl
      *            time to live in milliseconds
+     * @param weight
+     *            weight of the entry
      * @throws IllegalArgumentException
      *             if ttl is not positive
      */
-    StrongReferenceCacheEntry(V value, long ttl) {
+    StrongReferenceCacheEntry(V value, long ttl, long weight) {
         if (ttl <= 0) {
             throw new IllegalArgumentException("ttl must be positive");
         }
         this.value = value;
-        expirationTime = System.currentTimeMillis() + ttl;
+        this.weight = weight;
+        creationTime = System.currentTimeMillis();
+        expirationTime = creationTime + ttl;
     }
 
     /**
@@ -68,4 +79,20 @@ class StrongReferenceCacheEntry<V> implements InterfaceLruCacheEntry<V> {
         expirationTime = System.currentTimeMillis() + ttl;
         return true;
     }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public V peekValue() {
+        return value;
+    }
 }
\ No newline at end of file
@@ -18,8 +18,22 @@
 
 package fr.gouv.vitam.utils.lru;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+import fr.gouv.vitam.utils.logging.VitamLogger;
+import fr.gouv.vitam.utils.logging.VitamLoggerFactory;
 
 /**
  * Threadsafe synchronized implementation of LruCache based on LinkedHashMap. Threadsafety is
@@ -33,6 +47,8 @@ import java.util.Iterator;
  * @param <V> Value
  */
 public class SynchronizedLruCache<K, V> extends AbstractLruCache<K, V> {
+    private static final VitamLogger LOGGER = VitamLoggerFactory.getInstance(SynchronizedLruCache.class);
+
     /**
      * Initial capacity
      */
@@ -43,8 +59,18 @@ public class SynchronizedLruCache<K, V> extends AbstractLruCache<K, V> {
      */
     public static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
+    /**
+     * Number of entries decoded by batch when restoring a snapshot
+     */
+    public static final int DEFAULT_RESTORE_BATCH_SIZE = 1000;
+
     private final CapacityLruLinkedHashMap<K, InterfaceLruCacheEntry<V>> cacheMap;
 
+    /**
+     * Expiration order of the keys, so that expired entries are found without scanning
+     */
+    private final LruTimerWheel<K> timerWheel = new LruTimerWheel<K>(System.currentTimeMillis());
+
     /**
      * Creates new SynchronizedLruCache
      * 
@@ -58,9 +84,61 @@ public class SynchronizedLruCache<K, V> extends AbstractLruCache<K, V> {
      */
     public SynchronizedLruCache(int capacity, long ttl, int initialCapacity,
             float loadFactor) {
-        super(ttl);
+        this(capacity, ttl, initialCapacity, loadFactor, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates new SynchronizedLruCache bounded both by capacity and by total weight
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param initialCapacity
+     *            initial cache capacity
+     * @param loadFactor
+     * @param maximumWeight
+     *            max total weight of entries
+     * @param weigher
+     *            the weigher to use, null meaning each entry weighs 1
+     */
+    public SynchronizedLruCache(int capacity, long ttl, int initialCapacity,
+            float loadFactor, long maximumWeight, InterfaceLruWeigher<? super K, ? super V> weigher) {
+        super(ttl, weigher);
         cacheMap = new CapacityLruLinkedHashMap<K, InterfaceLruCacheEntry<V>>(
-                capacity, initialCapacity, loadFactor);
+                capacity, maximumWeight, initialCapacity, loadFactor) {
+            private static final long serialVersionUID = 2394785290634581227L;
+
+            @Override
+            protected void evicted(K key, InterfaceLruCacheEntry<V> value) {
+                timerWheel.deschedule(key);
+                recordEvictions(LruRemovalCause.SIZE, 1);
+                onEviction(key, value);
+            }
+
+            @Override
+            protected void resized(int entries, long weight) {
+                onResize(entries, weight);
+            }
+        };
+    }
+
+    /**
+     * Creates new SynchronizedLruCache bounded both by capacity and by total weight, with
+     * DEFAULT_LOAD_FACTOR and DEFAULT_INITIAL_CAPACITY
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param maximumWeight
+     *            max total weight of entries
+     * @param weigher
+     *            the weigher to use, null meaning each entry weighs 1
+     */
+    public SynchronizedLruCache(int capacity, long ttl, long maximumWeight,
+            InterfaceLruWeigher<? super K, ? super V> weigher) {
+        this(capacity, ttl, DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, maximumWeight, weigher);
     }
 
     /**
@@ -89,58 +167,447 @@ public class SynchronizedLruCache<K, V> extends AbstractLruCache<K, V> {
         this(capacity, ttl, DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
     }
 
-    public synchronized void clear() {
-        cacheMap.clear();
+    /**
+     * Removes all entries from cache, notifying them as EXPLICIT removals
+     */
+    public void clear() {
+        synchronized (this) {
+            for (final Map.Entry<K, InterfaceLruCacheEntry<V>> entry : cacheMap.entrySet()) {
+                notifyRemoval(entry.getKey(), entry.getValue(), LruRemovalCause.EXPLICIT);
+            }
+            cacheMap.clear();
+            timerWheel.clear();
+        }
+        dispatchRemovals();
     }
 
     @Override
-    public synchronized V get(K key) {
-        return super.get(key);
+    public V get(K key) {
+        final V value;
+        synchronized (this) {
+            drainReferenceQueue();
+            value = super.get(key);
+        }
+        dispatchRemovals();
+        return value;
+    }
+
+    @Override
+    protected synchronized InterfaceLruCacheEntry<V> getEntryToRefresh(K key, long timeRef) {
+        return super.getEntryToRefresh(key, timeRef);
+    }
+
+    @Override
+    protected boolean replaceValue(K key, InterfaceLruCacheEntry<V> expected, V value, long ttl) {
+        final boolean replaced;
+        synchronized (this) {
+            replaced = super.replaceValue(key, expected, value, ttl);
+        }
+        dispatchRemovals();
+        return replaced;
+    }
+
+    @Override
+    protected void getAllPresent(Collection<? extends K> keys, Map<K, V> result, Set<K> misses) {
+        synchronized (this) {
+            drainReferenceQueue();
+            super.getAllPresent(keys, result, misses);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        synchronized (this) {
+            drainReferenceQueue();
+            super.putAll(entries, ttl);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        synchronized (this) {
+            super.removeAll(keys);
+        }
+        dispatchRemovals();
     }
 
     public int getCapacity() {
         return cacheMap.getCapacity();
     }
 
+    public long getMaximumWeight() {
+        return cacheMap.getMaximumWeight();
+    }
+
+    public synchronized long getWeightedSize() {
+        return cacheMap.getWeightedSize();
+    }
+
     @Override
     protected InterfaceLruCacheEntry<V> getEntry(K key) {
         return cacheMap.get(key);
     }
 
-    public synchronized int size() {
-        return cacheMap.size();
+    public int size() {
+        final int size;
+        synchronized (this) {
+            drainReferenceQueue();
+            size = cacheMap.size();
+        }
+        dispatchRemovals();
+        return size;
     }
 
-    public synchronized void put(K key, V value, long ttl) {
-        super.put(key, value, ttl);
+    public void put(K key, V value, long ttl) {
+        synchronized (this) {
+            drainReferenceQueue();
+            super.put(key, value, ttl);
+        }
+        dispatchRemovals();
     }
 
     @Override
     protected void putEntry(K key, InterfaceLruCacheEntry<V> entry) {
-        cacheMap.put(key, entry);
+        final InterfaceLruCacheEntry<V> previous = cacheMap.put(key, entry);
+        if (cacheMap.get(key) == entry) {
+            // not evicted at once because of its weight
+            timerWheel.schedule(key, entry, entry.getExpirationTime() - entry.getCreationTime());
+        }
+        if (previous != null) {
+            notifyRemoval(key, previous, LruRemovalCause.REPLACED);
+        }
+    }
+
+    /**
+     * Called, while holding the cache lock, when an entry is evicted because of capacity or
+     * weight. Notifies a SIZE removal by default.
+     * 
+     * @param key
+     * @param entry
+     */
+    protected void onEviction(K key, InterfaceLruCacheEntry<V> entry) {
+        notifyRemoval(key, entry, LruRemovalCause.SIZE);
+    }
+
+    /**
+     * Called, while holding the cache lock, when the number of entries or the total weight
+     * changes, with the differences. Does nothing by default.
+     * 
+     * @param entries
+     * @param weight
+     */
+    protected void onResize(int entries, long weight) {
+        // nothing by default
+    }
+
+    /**
+     * Removes all entries, calling onEviction for each of them
+     */
+    protected void evictAll() {
+        synchronized (this) {
+            cacheMap.evictAll();
+            timerWheel.clear();
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * Evicts the least recently used entry, calling onEviction
+     * 
+     * @return true if an entry was evicted, false if the cache is empty
+     */
+    boolean evictOldest() {
+        final boolean evicted;
+        synchronized (this) {
+            evicted = cacheMap.evictEldest();
+        }
+        dispatchRemovals();
+        return evicted;
+    }
+
+    @Override
+    public synchronized void updateTtl(K key) {
+        final InterfaceLruCacheEntry<V> entry = cacheMap.get(key);
+        if (entry != null) {
+            entry.resetTime(getTtl());
+            timerWheel.schedule(key, entry, getTtl());
+        }
+    }
+
+    /**
+     * Resets the entry with its own ttl
+     */
+    @Override
+    protected void recordAccess(K key, InterfaceLruCacheEntry<V> entry) {
+        long ttl = timerWheel.getTtl(key);
+        if (ttl <= 0) {
+            ttl = getTtl();
+        }
+        entry.resetTime(ttl);
+        timerWheel.reschedule(key, entry.getExpirationTime());
     }
 
-    public synchronized V remove(K key) {
-        InterfaceLruCacheEntry<V> cv = cacheMap.remove(key);
+    public V remove(K key) {
+        final InterfaceLruCacheEntry<V> cv;
+        synchronized (this) {
+            cv = cacheMap.remove(key);
+            if (cv != null) {
+                timerWheel.deschedule(key);
+                notifyRemoval(key, cv, LruRemovalCause.EXPLICIT);
+            }
+        }
+        dispatchRemovals();
         if (cv != null) {
             return cv.getValue();
         }
         return null;
     }
 
-    public synchronized int forceClearOldest() {
-        long timeRef = System.currentTimeMillis();
-        Collection<InterfaceLruCacheEntry<V>> collection = cacheMap.values();
-        Iterator<InterfaceLruCacheEntry<V>> iterator = collection.iterator();
+    @Override
+    protected boolean removeEntry(K key, InterfaceLruCacheEntry<V> expected) {
+        if (cacheMap.get(key) == expected) {
+            cacheMap.remove(key);
+            timerWheel.deschedule(key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the expired entries, found through the timer wheel without scanning the cache. The
+     * wheel checks the expiration time of each entry, so that only expired entries are returned.
+     */
+    public int forceClearOldest() {
         int nb = 0;
-        while (iterator.hasNext()) {
-            InterfaceLruCacheEntry<V> v = iterator.next();
-            if (!v.isStillValid(timeRef)) {
-                iterator.remove();
-                nb++;
+        synchronized (this) {
+            drainReferenceQueue();
+            final long now = System.currentTimeMillis();
+            for (final K key : timerWheel.advance(now)) {
+                final InterfaceLruCacheEntry<V> entry = cacheMap.remove(key);
+                if (entry != null) {
+                    notifyRemoval(key, entry, LruRemovalCause.EXPIRED);
+                    nb++;
+                }
             }
+            recordEvictions(LruRemovalCause.EXPIRED, nb);
         }
+        dispatchRemovals();
         return nb;
     }
 
+    /**
+     * Writes the valid entries into a snapshot file, in LRU order, with their expiration time, so
+     * that the cache can be warmed up after a restart
+     * 
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     *            null to write keys only (values being reloaded at restore)
+     * @return the number of written entries
+     * @throws IOException
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be encoded
+     */
+    public int saveSnapshot(File file, InterfaceLruCodec<K> keyCodec, InterfaceLruCodec<V> valueCodec)
+            throws IOException, InvalidParseOperationException {
+        final List<LruSnapshotFile.Record<K, V>> records = new ArrayList<LruSnapshotFile.Record<K, V>>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final Map.Entry<K, InterfaceLruCacheEntry<V>> entry : cacheMap.entrySet()) {
+                final InterfaceLruCacheEntry<V> cacheEntry = entry.getValue();
+                final V value = cacheEntry.peekValue();
+                if (value != null && cacheEntry.isStillValid(now)) {
+                    records.add(new LruSnapshotFile.Record<K, V>(entry.getKey(), value,
+                            cacheEntry.getExpirationTime()));
+                }
+            }
+        }
+        // encoding and writing are done without holding the cache lock
+        LruSnapshotFile.write(file, records, keyCodec, valueCodec);
+        return records.size();
+    }
+
+    /**
+     * Restores the entries of a snapshot written with values, with their remaining ttl, decoding
+     * the values by batches of DEFAULT_RESTORE_BATCH_SIZE entries with as many threads as
+     * processors
+     * 
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     * @return the number of restored entries
+     * @throws IOException
+     *             if the file is not a valid snapshot
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be decoded
+     * @throws InterruptedException
+     */
+    public int restoreSnapshot(File file, InterfaceLruCodec<K> keyCodec, InterfaceLruCodec<V> valueCodec)
+            throws IOException, InvalidParseOperationException, InterruptedException {
+        return restoreSnapshot(file, keyCodec, valueCodec, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_RESTORE_BATCH_SIZE);
+    }
+
+    /**
+     * Restores the entries of a snapshot written with values, with their remaining ttl. Values are
+     * decoded by batches of batchSize entries, parallelism batches at a time, without holding the
+     * cache lock; the batches are then put in the snapshot LRU order.
+     * 
+     * @param file
+     * @param keyCodec
+     * @param valueCodec
+     * @param parallelism
+     *            number of concurrent batch decodings
+     * @param batchSize
+     *            max number of entries per batch
+     * @return the number of restored entries
+     * @throws IOException
+     *             if the file is not a valid snapshot
+     * @throws InvalidParseOperationException
+     *             if a key or a value cannot be decoded
+     * @throws InterruptedException
+     * @throws IllegalArgumentException
+     *             if parallelism or batchSize is not positive
+     */
+    public int restoreSnapshot(File file, final InterfaceLruCodec<K> keyCodec,
+            final InterfaceLruCodec<V> valueCodec, int parallelism, int batchSize)
+            throws IOException, InvalidParseOperationException, InterruptedException {
+        if (parallelism <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("parallelism and batchSize must be positive");
+        }
+        final List<LruSnapshotFile.Record<byte[], byte[]>> records = LruSnapshotFile.readEncoded(file);
+        final List<Callable<List<LruSnapshotFile.Record<K, V>>>> tasks =
+                new ArrayList<Callable<List<LruSnapshotFile.Record<K, V>>>>();
+        for (int from = 0; from < records.size(); from += batchSize) {
+            final List<LruSnapshotFile.Record<byte[], byte[]>> batch =
+                    records.subList(from, Math.min(records.size(), from + batchSize));
+            tasks.add(new Callable<List<LruSnapshotFile.Record<K, V>>>() {
+                public List<LruSnapshotFile.Record<K, V>> call() throws Exception {
+                    return LruSnapshotFile.decode(batch, keyCodec, valueCodec);
+                }
+            });
+        }
+        return restoreBatches(tasks, parallelism);
+    }
+
+    /**
+     * Restores the keys of a snapshot, their values being loaded through the loader by batches of
+     * batchSize keys, parallelism batches at a time, with the remaining ttl of each key. Failed
+     * batches are skipped.
+     * 
+     * @param file
+     * @param keyCodec
+     * @param loader
+     * @param parallelism
+     *            number of concurrent batch loads
+     * @param batchSize
+     *            max number of keys per batch load
+     * @return the number of restored entries
+     * @throws IOException
+     *             if the file is not a valid snapshot
+     * @throws InvalidParseOperationException
+     *             if a key cannot be decoded
+     * @throws InterruptedException
+     * @throws IllegalArgumentException
+     *             if parallelism or batchSize is not positive
+     */
+    public int restoreSnapshot(File file, InterfaceLruCodec<K> keyCodec, final InterfaceLruBatchLoader<K, V> loader,
+            int parallelism, int batchSize) throws IOException, InvalidParseOperationException, InterruptedException {
+        if (parallelism <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("parallelism and batchSize must be positive");
+        }
+        final List<LruSnapshotFile.Record<K, V>> records = LruSnapshotFile.read(file, keyCodec, null);
+        final List<Callable<List<LruSnapshotFile.Record<K, V>>>> tasks =
+                new ArrayList<Callable<List<LruSnapshotFile.Record<K, V>>>>();
+        for (int from = 0; from < records.size(); from += batchSize) {
+            final List<LruSnapshotFile.Record<K, V>> batch =
+                    records.subList(from, Math.min(records.size(), from + batchSize));
+            tasks.add(new Callable<List<LruSnapshotFile.Record<K, V>>>() {
+                public List<LruSnapshotFile.Record<K, V>> call() throws Exception {
+                    final Set<K> keys = new LinkedHashSet<K>();
+                    for (final LruSnapshotFile.Record<K, V> record : batch) {
+                        keys.add(record.key);
+                    }
+                    final Map<K, V> loaded = loadAll(loader, keys);
+                    final List<LruSnapshotFile.Record<K, V>> result = new ArrayList<LruSnapshotFile.Record<K, V>>();
+                    if (loaded != null) {
+                        for (final LruSnapshotFile.Record<K, V> record : batch) {
+                            final V value = loaded.get(record.key);
+                            if (value != null) {
+                                result.add(new LruSnapshotFile.Record<K, V>(record.key, value,
+                                        record.expirationTime));
+                            }
+                        }
+                    }
+                    return result;
+                }
+            });
+        }
+        return restoreBatches(tasks, parallelism);
+    }
+
+    /**
+     * Runs the tasks, parallelism at a time, and puts their records in the order of the tasks.
+     * Batches failing otherwise than by decoding are skipped.
+     * 
+     * @param tasks
+     * @param parallelism
+     * @return the number of restored entries
+     * @throws InvalidParseOperationException
+     *             if a batch cannot be decoded
+     * @throws InterruptedException
+     */
+    private int restoreBatches(List<Callable<List<LruSnapshotFile.Record<K, V>>>> tasks, int parallelism)
+            throws InvalidParseOperationException, InterruptedException {
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        final ThreadPoolExecutor executor = LruExecutors.newBoundedExecutor("LruRestore", parallelism,
+                tasks.size());
+        int nb = 0;
+        try {
+            final List<Future<List<LruSnapshotFile.Record<K, V>>>> futures =
+                    new ArrayList<Future<List<LruSnapshotFile.Record<K, V>>>>(tasks.size());
+            for (final Callable<List<LruSnapshotFile.Record<K, V>>> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            executor.shutdown();
+            for (final Future<List<LruSnapshotFile.Record<K, V>>> future : futures) {
+                try {
+                    nb += restoreRecords(future.get());
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof InvalidParseOperationException) {
+                        throw (InvalidParseOperationException) e.getCause();
+                    }
+                    LOGGER.warn("Cannot load a batch of the snapshot", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return nb;
+    }
+
+    /**
+     * Puts the records with their remaining ttl, skipping the expired ones
+     * 
+     * @param records
+     * @return the number of restored entries
+     */
+    private int restoreRecords(List<LruSnapshotFile.Record<K, V>> records) {
+        int nb = 0;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            for (final LruSnapshotFile.Record<K, V> record : records) {
+                if (record.value != null && record.expirationTime > now) {
+                    putLoaded(record.key, record.value, record.expirationTime - now);
+                    nb++;
+                }
+            }
+        }
+        dispatchRemovals();
+        return nb;
+    }
 }
@@ -0,0 +1,369 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+import fr.gouv.vitam.utils.logging.VitamLogger;
+import fr.gouv.vitam.utils.logging.VitamLoggerFactory;
+
+/**
+ * Two tiers implementation of LruCache: a heap tier (SynchronizedLruCache) backed by a local disk
+ * tier made of append-only segment files.
+ *
+ * Entries evicted from the heap tier because of capacity or weight are written to the disk tier
+ * (keys and values being serialized through the given codecs), and a disk hit from get or getAll
+ * promotes the entry back to the heap tier with its remaining TTL. The promoted entry keeps its
+ * disk copy, so that reads do not write to disk and a later eviction of the unchanged entry does
+ * not write it again. The disk tier is bounded in size, compacts its segments and recovers its
+ * index when the cache is created again on the same directory, so that the cache survives
+ * restarts warm.
+ *
+ * Disk accesses are done while holding the cache lock. size(), getCapacity() and removal
+ * notifications concern the heap tier only (an entry spilled to disk is not notified, an entry
+ * refused by a full disk tier is notified as a SIZE removal). The cache must be closed to keep the
+ * heap tier content on disk, and cannot be used once closed.
+ *
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ */
+public class TieredLruCache<K, V> extends SynchronizedLruCache<K, V> implements Closeable {
+    private static final VitamLogger LOGGER = VitamLoggerFactory.getInstance(TieredLruCache.class);
+
+    /**
+     * Default segment size (64 MB)
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final DiskSegmentStore<K> diskStore;
+
+    private final InterfaceLruCodec<V> valueCodec;
+
+    private boolean closed;
+
+    /**
+     * Creates new TieredLruCache
+     *
+     * @param capacity
+     *            max heap tier capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param directory
+     *            directory of the disk tier
+     * @param maximumDiskBytes
+     *            max size of the disk tier
+     * @param segmentSize
+     *            size of one segment file, so the max size of one entry on disk
+     * @param keyCodec
+     * @param valueCodec
+     * @throws IOException
+     *             if the disk tier cannot be opened
+     */
+    public TieredLruCache(int capacity, long ttl, File directory, long maximumDiskBytes, int segmentSize,
+            InterfaceLruCodec<K> keyCodec, InterfaceLruCodec<V> valueCodec) throws IOException {
+        super(capacity, ttl);
+        this.valueCodec = valueCodec;
+        diskStore = new DiskSegmentStore<K>(directory, maximumDiskBytes, segmentSize, keyCodec);
+    }
+
+    /**
+     * Creates new TieredLruCache with DEFAULT_SEGMENT_SIZE
+     *
+     * @param capacity
+     *            max heap tier capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param directory
+     *            directory of the disk tier
+     * @param maximumDiskBytes
+     *            max size of the disk tier
+     * @param keyCodec
+     * @param valueCodec
+     * @throws IOException
+     *             if the disk tier cannot be opened
+     */
+    public TieredLruCache(int capacity, long ttl, File directory, long maximumDiskBytes,
+            InterfaceLruCodec<K> keyCodec, InterfaceLruCodec<V> valueCodec) throws IOException {
+        this(capacity, ttl, directory, maximumDiskBytes, DEFAULT_SEGMENT_SIZE, keyCodec, valueCodec);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Cache is closed");
+        }
+    }
+
+    /**
+     * Spills the entry to the disk tier (unless it was promoted and is unchanged since, its disk
+     * copy being still there), a SIZE removal being notified only if it cannot be written
+     */
+    @Override
+    protected void onEviction(K key, InterfaceLruCacheEntry<V> entry) {
+        final V value = entry.getValue();
+        if (value == null) {
+            return;
+        }
+        if (entry instanceof PromotedEntry && ((PromotedEntry<V>) entry).unchanged
+                && diskStore.get(key) != null) {
+            return;
+        }
+        try {
+            if (diskStore.put(key, valueCodec.encode(value), entry.getExpirationTime())) {
+                return;
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot spill entry to disk", e);
+        } catch (final InvalidParseOperationException e) {
+            LOGGER.warn("Cannot encode entry", e);
+        }
+        super.onEviction(key, entry);
+    }
+
+    /**
+     * Returns the heap value, promoting the disk entry to the heap tier if needed. Only the get
+     * paths promote, not the internal lookups through getEntry.
+     */
+    @Override
+    protected V getValue(K key) {
+        ensureOpen();
+        if (super.getEntry(key) == null) {
+            final DiskSegmentStore.DiskEntry diskEntry = diskStore.get(key);
+            if (diskEntry != null) {
+                final V value = readFromDisk(diskEntry);
+                if (value != null) {
+                    final long ttl = Math.max(1, diskEntry.getExpirationTime() - System.currentTimeMillis());
+                    putEntry(key, new PromotedEntry<V>(createEntry(key, value, ttl, weigh(key, value))));
+                } else {
+                    removeFromDisk(key);
+                }
+            }
+        }
+        return super.getValue(key);
+    }
+
+    /**
+     * Reads the value from the disk tier
+     *
+     * @param diskEntry
+     * @return the value or null if not readable
+     */
+    private V readFromDisk(DiskSegmentStore.DiskEntry diskEntry) {
+        try {
+            return valueCodec.decode(diskStore.read(diskEntry));
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot read entry from disk", e);
+        } catch (final InvalidParseOperationException e) {
+            LOGGER.warn("Cannot decode entry", e);
+        }
+        return null;
+    }
+
+    private void removeFromDisk(K key) {
+        try {
+            diskStore.remove(key);
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot remove entry from disk", e);
+        } catch (final InvalidParseOperationException e) {
+            LOGGER.warn("Cannot encode key", e);
+        }
+    }
+
+    @Override
+    protected void putEntry(K key, InterfaceLruCacheEntry<V> entry) {
+        ensureOpen();
+        super.putEntry(key, entry);
+    }
+
+    /**
+     * The disk copy of a promoted entry keeps its previous expiration time, so the entry is
+     * written again at eviction
+     */
+    @Override
+    public synchronized void updateTtl(K key) {
+        final InterfaceLruCacheEntry<V> entry = super.getEntry(key);
+        if (entry instanceof PromotedEntry) {
+            ((PromotedEntry<V>) entry).unchanged = false;
+        }
+        super.updateTtl(key);
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
+        synchronized (this) {
+            ensureOpen();
+            super.put(key, value, ttl);
+            // the disk copy, if any, is now stale
+            removeFromDisk(key);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        synchronized (this) {
+            ensureOpen();
+            super.putAll(entries, ttl);
+            for (final K key : entries.keySet()) {
+                removeFromDisk(key);
+            }
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * Removes the entry from both tiers. Only heap tier removals are notified.
+     */
+    @Override
+    public V remove(K key) {
+        V value;
+        synchronized (this) {
+            ensureOpen();
+            value = super.remove(key);
+            if (value == null) {
+                final DiskSegmentStore.DiskEntry diskEntry = diskStore.get(key);
+                if (diskEntry != null) {
+                    value = readFromDisk(diskEntry);
+                }
+            }
+            removeFromDisk(key);
+        }
+        dispatchRemovals();
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            ensureOpen();
+            super.clear();
+            try {
+                diskStore.clear();
+            } catch (final IOException e) {
+                LOGGER.warn("Cannot clear disk tier", e);
+            }
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public int forceClearOldest() {
+        int nb = 0;
+        synchronized (this) {
+            ensureOpen();
+            for (final K key : diskStore.removeExpired()) {
+                // a promoted entry is counted by the heap tier
+                if (super.getEntry(key) == null) {
+                    nb++;
+                }
+            }
+            recordEvictions(LruRemovalCause.EXPIRED, nb);
+        }
+        return super.forceClearOldest() + nb;
+    }
+
+    /**
+     *
+     * @return the number of entries in the disk tier, including the ones promoted to the heap
+     *         tier
+     */
+    public synchronized int getDiskSize() {
+        return diskStore.size();
+    }
+
+    /**
+     *
+     * @return the size in bytes of the disk tier segments
+     */
+    public synchronized long getDiskBytes() {
+        return diskStore.getTotalBytes();
+    }
+
+    /**
+     * Writes all heap entries to the disk tier then closes it, so that a new cache on the same
+     * directory starts warm
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            evictAll();
+            closed = true;
+            diskStore.close();
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * Entry promoted from the disk tier. Any put or refresh replaces it by a new entry, so that
+     * only updateTtl has to mark it as changed.
+     */
+    private static final class PromotedEntry<V> implements InterfaceLruCacheEntry<V> {
+        private final InterfaceLruCacheEntry<V> entry;
+
+        /**
+         * True while the disk copy is up to date
+         */
+        private boolean unchanged = true;
+
+        private PromotedEntry(InterfaceLruCacheEntry<V> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public V getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public boolean isStillValid(long timeRef) {
+            return entry.isStillValid(timeRef);
+        }
+
+        @Override
+        public boolean resetTime(long ttl) {
+            return entry.resetTime(ttl);
+        }
+
+        @Override
+        public long getWeight() {
+            return entry.getWeight();
+        }
+
+        @Override
+        public long getExpirationTime() {
+            return entry.getExpirationTime();
+        }
+
+        @Override
+        public long getCreationTime() {
+            return entry.getCreationTime();
+        }
+
+        @Override
+        public V peekValue() {
+            return entry.peekValue();
+        }
+    }
+}
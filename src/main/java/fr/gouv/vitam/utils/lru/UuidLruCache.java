@@ -0,0 +1,191 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.concurrent.Callable;
+
+import fr.gouv.vitam.utils.UUID;
+
+/**
+ * Threadsafe LRU cache keyed by {@link UUID}, keeping keys as primitive values (most and least
+ * significant bits plus extra bits) without per entry object nor reference to the UUID.
+ * 
+ * Capacity is preallocated. Threadsafety is provided by method synchronization.
+ * 
+ * @author Frederic Bregier
+ * @param <V> Value
+ * 
+ */
+public class UuidLruCache<V> extends AbstractPrimitiveLruCache<V> {
+    private final long[] mostSignificantBits;
+
+    private final long[] leastSignificantBits;
+
+    private final char[] extraBits;
+
+    /**
+     * 
+     * @param capacity
+     *            max number of entries
+     * @param ttl
+     *            default time to live in milliseconds
+     * @throws IllegalArgumentException
+     *             if capacity or ttl is not positive
+     */
+    public UuidLruCache(int capacity, long ttl) {
+        super(capacity, ttl);
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        extraBits = new char[capacity];
+    }
+
+    private static final int hash(long most, long least, int extra) {
+        return mix(most ^ (least * 31) ^ extra);
+    }
+
+    @Override
+    protected int hashOf(int entry) {
+        return hash(mostSignificantBits[entry], leastSignificantBits[entry], extraBits[entry]);
+    }
+
+    /**
+     * 
+     * @param key
+     * @return the slot of the key if present, else the complement (~) of the free slot where to
+     *         insert it
+     */
+    private int find(UUID key) {
+        final long most = key.getMostSignificantBits();
+        final long least = key.getLeastSignificantBits();
+        final int extra = key.getExtraBits();
+        int slot = home(hash(most, least, extra));
+        int entry;
+        while ((entry = table[slot]) != FREE) {
+            if (mostSignificantBits[entry] == most && leastSignificantBits[entry] == least
+                    && extraBits[entry] == extra) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Checks whether cache contains valid entry for key
+     * 
+     * @param key
+     * @return true if cache contains key and entry is valid
+     */
+    public synchronized boolean contains(UUID key) {
+        final int slot = find(key);
+        return slot >= 0 && isValidAt(slot);
+    }
+
+    /**
+     * Returns value cached with key.
+     * 
+     * @param key
+     * @return value or null if key doesn't exist or entry is not valid
+     */
+    public synchronized V get(UUID key) {
+        final int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        return valueAt(slot);
+    }
+
+    /**
+     * Tries to get element from cache. If get fails callback is used to create element and returned
+     * value is stored in cache. Default TTL is used
+     * 
+     * @param key
+     * @param callback
+     * @return Value
+     * @throws Exception
+     *             if callback throws exception
+     */
+    public V get(UUID key, Callable<V> callback) throws Exception {
+        V value = get(key);
+        if (value == null) {
+            value = callback.call();
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Puts value under key into cache. Default TTL is used
+     * 
+     * @param key
+     * @param value
+     */
+    public void put(UUID key, V value) {
+        put(key, value, getTtl());
+    }
+
+    /**
+     * Puts value under key into cache with desired TTL
+     * 
+     * @param key
+     * @param value
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public synchronized void put(UUID key, V value, long ttl) {
+        int slot = find(key);
+        if (slot >= 0) {
+            update(slot, value, ttl);
+            return;
+        }
+        if (ensureRoom()) {
+            slot = find(key);
+        }
+        final int entry = add(~slot, value, ttl);
+        mostSignificantBits[entry] = key.getMostSignificantBits();
+        leastSignificantBits[entry] = key.getLeastSignificantBits();
+        extraBits[entry] = (char) key.getExtraBits();
+    }
+
+    /**
+     * Removes entry from cache (if exists)
+     * 
+     * @param key
+     * @return the previous value if valid, else null
+     */
+    public synchronized V remove(UUID key) {
+        final int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        return removeAt(slot);
+    }
+
+    /**
+     * Resets the TTL of the entry to the default one (if exists)
+     * 
+     * @param key
+     */
+    public synchronized void updateTtl(UUID key) {
+        final int slot = find(key);
+        if (slot >= 0) {
+            resetTimeAt(slot);
+        }
+    }
+}
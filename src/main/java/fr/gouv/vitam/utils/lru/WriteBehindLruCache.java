@@ -0,0 +1,404 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.gouv.vitam.utils.logging.VitamLogger;
+import fr.gouv.vitam.utils.logging.VitamLoggerFactory;
+
+/**
+ * Write behind implementation of LruCache: put updates the cache immediately and marks the entry
+ * dirty, a background flusher writing the dirty entries by batch through the writer, either when
+ * batchSize dirty keys are waiting or every flushInterval.
+ * 
+ * Multiple writes of the same key between two flushes are coalesced (only the last value is
+ * written). Dirty entries are flushed before eviction: a dirty entry evicted because of capacity
+ * remains readable, and is notified as a SIZE removal, only once its value was written. Values
+ * obtained through a loader (get with callback, getAll with batch loader) or a refresh are not
+ * dirty. remove and clear only concern the cache: pending writes are still flushed.
+ * 
+ * If the writer fails, the entries remain dirty and are retried with the next flush. At most
+ * maximumDirty keys are dirty at a time: beyond, put flushes synchronously by the calling thread,
+ * and throws an IllegalStateException if the writer fails. The cache must be closed to flush the
+ * last dirty entries.
+ * 
+ * @author Frederic Bregier
+ * @param <K> Key
+ * @param <V> Value
+ */
+public class WriteBehindLruCache<K, V> extends SynchronizedLruCache<K, V> implements Closeable {
+    private static final VitamLogger LOGGER = VitamLoggerFactory.getInstance(WriteBehindLruCache.class);
+
+    private final InterfaceLruBatchWriter<K, V> writer;
+
+    private final int batchSize;
+
+    private final int maximumDirty;
+
+    private final ScheduledThreadPoolExecutor flusher;
+
+    /**
+     * Serializes the flushes, so that writes of a key reach the writer in order
+     */
+    private final Object flushLock = new Object();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            flushRequested.set(false);
+            try {
+                flush();
+            } catch (final Exception e) {
+                LOGGER.warn("Write behind flush failed, entries kept dirty", e);
+            }
+        }
+    };
+
+    /**
+     * Last value of each key written since the last flush, in order of first write
+     */
+    private Map<K, V> dirty = new LinkedHashMap<K, V>();
+
+    /**
+     * Batch being written by the current flush
+     */
+    private Map<K, V> inFlight = Collections.emptyMap();
+
+    /**
+     * Dirty entries evicted from the cache, still readable until flushed
+     */
+    private final Map<K, InterfaceLruCacheEntry<V>> evictedDirty = new HashMap<K, InterfaceLruCacheEntry<V>>();
+
+    /**
+     * Creates new WriteBehindLruCache
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param writer
+     *            the writer of the dirty entries
+     * @param batchSize
+     *            number of dirty keys triggering a flush
+     * @param flushInterval
+     *            max time in milliseconds between two flushes
+     * @param maximumDirty
+     *            max number of dirty keys before put flushes synchronously
+     * @throws IllegalArgumentException
+     *             if writer is null or batchSize, flushInterval or maximumDirty is not positive
+     */
+    public WriteBehindLruCache(int capacity, long ttl, InterfaceLruBatchWriter<K, V> writer, int batchSize,
+            long flushInterval, int maximumDirty) {
+        super(capacity, ttl);
+        if (writer == null) {
+            throw new IllegalArgumentException("writer must not be null");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be positive");
+        }
+        if (maximumDirty <= 0) {
+            throw new IllegalArgumentException("maximumDirty must be positive");
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.maximumDirty = maximumDirty;
+        flusher = LruExecutors.newScheduledExecutor("LruWriteBehind");
+        flusher.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates new WriteBehindLruCache allowing as many dirty keys as the largest of capacity and
+     * batchSize
+     * 
+     * @param capacity
+     *            max cache capacity
+     * @param ttl
+     *            time to live in milliseconds
+     * @param writer
+     *            the writer of the dirty entries
+     * @param batchSize
+     *            number of dirty keys triggering a flush
+     * @param flushInterval
+     *            max time in milliseconds between two flushes
+     * @throws IllegalArgumentException
+     *             if writer is null or batchSize or flushInterval is not positive
+     */
+    public WriteBehindLruCache(int capacity, long ttl, InterfaceLruBatchWriter<K, V> writer, int batchSize,
+            long flushInterval) {
+        this(capacity, ttl, writer, batchSize, flushInterval, Math.max(capacity, batchSize));
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if maximumDirty keys are dirty and the synchronous flush fails
+     */
+    @Override
+    public void put(K key, V value, long ttl) {
+        if (value == null) {
+            return;
+        }
+        boolean full;
+        for (;;) {
+            synchronized (this) {
+                if (dirty.size() < maximumDirty || dirty.containsKey(key)) {
+                    replaceEvictedDirty(key);
+                    super.put(key, value, ttl);
+                    dirty.put(key, value);
+                    full = dirty.size() >= batchSize;
+                    break;
+                }
+            }
+            flushForRoom();
+        }
+        dispatchRemovals();
+        if (full) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if maximumDirty keys are dirty and the synchronous flush fails
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries, long ttl) {
+        boolean full;
+        for (;;) {
+            synchronized (this) {
+                if (dirty.isEmpty() || dirty.size() + entries.size() <= maximumDirty) {
+                    for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                        if (entry.getValue() != null) {
+                            replaceEvictedDirty(entry.getKey());
+                        }
+                    }
+                    super.putAll(entries, ttl);
+                    for (final Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                        if (entry.getValue() != null) {
+                            dirty.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    full = dirty.size() >= batchSize;
+                    break;
+                }
+            }
+            flushForRoom();
+        }
+        dispatchRemovals();
+        if (full) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Flushes by the calling thread, so that putting threads wait for the writer when too many keys
+     * are dirty
+     */
+    private void flushForRoom() {
+        try {
+            flush();
+        } catch (final Exception e) {
+            throw new IllegalStateException("Too many dirty entries and cannot flush them", e);
+        }
+    }
+
+    private void replaceEvictedDirty(K key) {
+        final InterfaceLruCacheEntry<V> evicted = evictedDirty.remove(key);
+        if (evicted != null) {
+            notifyRemoval(key, evicted, LruRemovalCause.REPLACED);
+        }
+    }
+
+    @Override
+    protected void putLoaded(K key, V value, long ttl) {
+        super.put(key, value, ttl);
+    }
+
+    @Override
+    protected void putAllLoaded(Map<? extends K, ? extends V> entries, long ttl) {
+        super.putAll(entries, ttl);
+    }
+
+    /**
+     * Returns the cache entry, or the evicted dirty one if any
+     */
+    @Override
+    protected InterfaceLruCacheEntry<V> getEntry(K key) {
+        final InterfaceLruCacheEntry<V> entry = super.getEntry(key);
+        if (entry == null) {
+            return evictedDirty.get(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Keeps the dirty entry (including one being written) until it is flushed, the SIZE removal
+     * being notified then
+     */
+    @Override
+    protected void onEviction(K key, InterfaceLruCacheEntry<V> entry) {
+        if (dirty.containsKey(key) || inFlight.containsKey(key)) {
+            evictedDirty.put(key, entry);
+            return;
+        }
+        super.onEviction(key, entry);
+    }
+
+    @Override
+    public V remove(K key) {
+        V value;
+        synchronized (this) {
+            final InterfaceLruCacheEntry<V> evicted = evictedDirty.remove(key);
+            value = super.remove(key);
+            if (evicted != null) {
+                notifyRemoval(key, evicted, LruRemovalCause.EXPLICIT);
+                value = evicted.getValue();
+            }
+        }
+        dispatchRemovals();
+        return value;
+    }
+
+    @Override
+    public void removeAll(Collection<? extends K> keys) {
+        synchronized (this) {
+            for (final K key : keys) {
+                final InterfaceLruCacheEntry<V> evicted = evictedDirty.remove(key);
+                if (evicted != null) {
+                    notifyRemoval(key, evicted, LruRemovalCause.EXPLICIT);
+                }
+            }
+            super.removeAll(keys);
+        }
+        dispatchRemovals();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            for (final Map.Entry<K, InterfaceLruCacheEntry<V>> entry : evictedDirty.entrySet()) {
+                notifyRemoval(entry.getKey(), entry.getValue(), LruRemovalCause.EXPLICIT);
+            }
+            evictedDirty.clear();
+            super.clear();
+        }
+        dispatchRemovals();
+    }
+
+    /**
+     * 
+     * @return the number of dirty keys waiting to be written
+     */
+    public synchronized int getDirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * 
+     * @return the max number of dirty keys
+     */
+    public int getMaximumDirty() {
+        return maximumDirty;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(flushTask);
+            } catch (final RejectedExecutionException e) {
+                // closed
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all dirty entries now, by the calling thread
+     * 
+     * @return the number of written entries
+     * @throws Exception
+     *             if the writer fails, the entries being kept dirty
+     */
+    public int flush() throws Exception {
+        synchronized (flushLock) {
+            final Map<K, V> batch;
+            synchronized (this) {
+                if (dirty.isEmpty()) {
+                    return 0;
+                }
+                batch = dirty;
+                inFlight = batch;
+                dirty = new LinkedHashMap<K, V>();
+            }
+            try {
+                writer.writeAll(batch);
+            } catch (final Exception e) {
+                synchronized (this) {
+                    // newer writes done meanwhile override the failed ones
+                    batch.putAll(dirty);
+                    dirty = batch;
+                    inFlight = Collections.emptyMap();
+                }
+                throw e;
+            }
+            synchronized (this) {
+                inFlight = Collections.emptyMap();
+                for (final K key : batch.keySet()) {
+                    if (!dirty.containsKey(key)) {
+                        final InterfaceLruCacheEntry<V> evicted = evictedDirty.remove(key);
+                        if (evicted != null) {
+                            notifyRemoval(key, evicted, LruRemovalCause.SIZE);
+                        }
+                    }
+                }
+            }
+            dispatchRemovals();
+            return batch.size();
+        }
+    }
+
+    /**
+     * Stops the background flusher then writes the last dirty entries
+     * 
+     * @throws IOException
+     *             if the last flush fails
+     */
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flush();
+        } catch (final Exception e) {
+            throw new IOException("Cannot flush dirty entries", e);
+        }
+    }
+}
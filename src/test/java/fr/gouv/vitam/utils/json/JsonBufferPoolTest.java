@@ -0,0 +1,141 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+@SuppressWarnings("javadoc")
+public class JsonBufferPoolTest {
+
+    @Test
+    public void testBoundedPool() {
+        final JsonBufferPool pool = new JsonBufferPool(2);
+        assertNull(JsonBufferPool.currentRecycler());
+        final JsonBufferPool.Buffers first = pool.acquire();
+        assertSame(first.recycler, JsonBufferPool.currentRecycler());
+        final JsonBufferPool.Buffers second = pool.acquire();
+        final JsonBufferPool.Buffers third = pool.acquire();
+        assertSame(third.recycler, JsonBufferPool.currentRecycler());
+        assertEquals(3, pool.getInUseCount());
+        assertEquals(3, pool.getMissCount());
+        pool.release(third);
+        assertSame(second.recycler, JsonBufferPool.currentRecycler());
+        pool.release(second);
+        pool.release(first);
+        assertNull(JsonBufferPool.currentRecycler());
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(2, pool.getPooledCount());
+        assertEquals(1, pool.getDropCount());
+        final JsonBufferPool.Buffers reused = pool.acquire();
+        assertSame(third, reused);
+        assertEquals(1, pool.getHitCount());
+        pool.release(reused);
+        assertNull(JsonBufferPool.currentRecycler());
+        try {
+            new JsonBufferPool(0);
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testConcurrentSerialization() throws Exception {
+        final JsonBufferPool pool = JsonHandler.getBufferPool();
+        final long calls = pool.getHitCount() + pool.getMissCount();
+        final int threads = 8;
+        final int iterations = 500;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Thread> list = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            final JsonNode node = JsonHandler.getFromString("{\"Thread\":" + id + ",\"Title\":\"é"
+                                    + i + "\",\"Keyword\":[" + i + "," + id + "]}");
+                            final byte[] bytes = JsonHandler.writeAsBytes(node);
+                            assertEquals(node, JsonHandler.getFromBytes(bytes));
+                            assertEquals(node, JsonHandler.getFromString(JsonHandler.writeAsString(node)));
+                            assertArrayEquals(bytes, JsonHandler.writeAsBytes(node, JsonFormat.JSON));
+                        }
+                    } catch (final Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            list.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : list) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(0, pool.getInUseCount());
+        assertTrue(pool.getPooledCount() <= pool.getMaximumPooled());
+        assertTrue(pool.getHitCount() + pool.getMissCount() >= calls + 3L * threads * iterations);
+        assertTrue(pool.getHitCount() > 0);
+        assertNull(JsonBufferPool.currentRecycler());
+    }
+
+    @Test
+    public void testXmlSerialization() throws Exception {
+        final JsonHandlerTest.Unit unit = new JsonHandlerTest.Unit();
+        unit.title = "Été";
+        unit.level = 1;
+        final JsonBufferPool pool = JsonHandler.getBufferPool();
+        final long calls = pool.getHitCount() + pool.getMissCount();
+        final String xml = XmlHandler.writeAsString(unit);
+        assertEquals("Été", XmlHandler.getFromString(xml, JsonHandlerTest.Unit.class).title);
+        assertEquals(calls + 1, pool.getHitCount() + pool.getMissCount());
+    }
+
+    @Test
+    public void testSmileFactory() throws Exception {
+        final JsonBufferPool pool = new JsonBufferPool(1);
+        final PooledSmileFactory factory = new PooledSmileFactory();
+        assertTrue(factory.copy() instanceof PooledSmileFactory);
+        final JsonBufferPool.Buffers buffers = pool.acquire();
+        try {
+            assertSame(buffers.recycler, factory._getBufferRecycler());
+        } finally {
+            pool.release(buffers);
+        }
+        final JsonNode node = JsonHandler.getFromString("{\"Title\":\"Été\",\"Keyword\":[1,2]}");
+        assertEquals(node, JsonHandler.getFromBytes(JsonHandler.writeAsBytes(node, JsonFormat.SMILE),
+                JsonFormat.SMILE));
+    }
+}
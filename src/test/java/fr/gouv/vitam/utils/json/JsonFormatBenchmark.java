@@ -0,0 +1,146 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+/**
+ * JMH benchmark of encoding and decoding archive units in each JsonFormat (not run by the tests).
+ * The main method prints the encoded sizes.
+ * 
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="JsonFormatBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonFormatBenchmark {
+    /**
+     * Format under test
+     */
+    @Param({ "JSON", "SMILE" })
+    public JsonFormat format;
+
+    /**
+     * Number of keywords of the archive unit
+     */
+    @Param({ "5", "100" })
+    public int keywords;
+
+    JsonNode unit;
+
+    byte[] encoded;
+
+    /**
+     * 
+     * @throws InvalidParseOperationException
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidParseOperationException {
+        unit = createArchiveUnit(keywords);
+        encoded = JsonHandler.writeAsBytes(unit, format);
+    }
+
+    /**
+     * 
+     * @param keywords
+     * @return an archive unit as found in SEDA manifests
+     */
+    static JsonNode createArchiveUnit(int keywords) {
+        final ObjectNode unit = JsonHandler.createObjectNode();
+        unit.put("_id", "aeaaaaaaaaaam7mxaa2pkak2bnhxy4aaaaaq");
+        unit.put("DescriptionLevel", "Item");
+        unit.put("Title", "Procès-verbal de la séance du conseil général de l'Hérault");
+        unit.put("Description", "Délibérations, rapports et vœux émis lors de la session ordinaire, "
+                + "avec les pièces annexées et la correspondance échangée avec la préfecture.");
+        unit.put("StartDate", "1954-03-12T00:00:00");
+        unit.put("EndDate", "1954-11-30T00:00:00");
+        final ArrayNode keywordArray = unit.putArray("Keyword");
+        for (int i = 0; i < keywords; i++) {
+            final ObjectNode keyword = keywordArray.addObject();
+            keyword.put("KeywordType", i % 2 == 0 ? "subject" : "geogname");
+            keyword.put("KeywordContent", "Mot-clé numéro " + i + " (Montpellier, Béziers)");
+        }
+        final ArrayNode up = unit.putArray("_up");
+        for (int i = 0; i < 3; i++) {
+            up.add("aeaaaaaaaaaam7mxaa2pkak2bnhxy4aaaaa" + i);
+        }
+        final ObjectNode management = unit.putObject("_mgt");
+        management.putObject("AccessRule").put("Rule", "ACC-00003").put("StartDate", "1954-11-30");
+        management.put("_tenant", 0);
+        management.put("_nbc", keywords);
+        return unit;
+    }
+
+    /**
+     * 
+     * @return the encoded unit
+     * @throws InvalidParseOperationException
+     */
+    @Benchmark
+    public byte[] encode() throws InvalidParseOperationException {
+        return JsonHandler.writeAsBytes(unit, format);
+    }
+
+    /**
+     * 
+     * @return the decoded unit
+     * @throws InvalidParseOperationException
+     */
+    @Benchmark
+    public JsonNode decode() throws InvalidParseOperationException {
+        return JsonHandler.getFromBytes(encoded, format);
+    }
+
+    /**
+     * Prints the encoded sizes, including the indented and escaped default output
+     * 
+     * @param args
+     * @throws InvalidParseOperationException
+     */
+    public static void main(String[] args) throws InvalidParseOperationException {
+        for (final int keywords : new int[] { 5, 100 }) {
+            final JsonNode unit = createArchiveUnit(keywords);
+            System.out.printf("%3d keywords: writeAsString %6d chars, JSON %6d bytes, SMILE %6d bytes%n", keywords,
+                    JsonHandler.writeAsString(unit).length(), JsonHandler.writeAsBytes(unit, JsonFormat.JSON).length,
+                    JsonHandler.writeAsBytes(unit, JsonFormat.SMILE).length);
+        }
+    }
+}
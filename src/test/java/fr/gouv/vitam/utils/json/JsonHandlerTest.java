@@ -0,0 +1,261 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+@SuppressWarnings("javadoc")
+public class JsonHandlerTest {
+    private static final String ARRAY = "[{\"Title\":\"t1\",\"Level\":1},{\"Title\":\"t2\",\"Level\":2},{\"Title\":\"t3\"}]";
+
+    private static ByteArrayInputStream stream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParser() throws Exception {
+        final JsonParser parser = JsonHandler.createParser(stream(ARRAY));
+        int fields = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.FIELD_NAME) {
+                fields++;
+            }
+        }
+        parser.close();
+        assertEquals(5, fields);
+    }
+
+    @Test
+    public void testForEachArrayElement() throws Exception {
+        final List<JsonNode> elements = new ArrayList<JsonNode>();
+        final int count = JsonHandler.forEachArrayElement(stream(ARRAY), new InterfaceJsonElementHandler<JsonNode>() {
+            @Override
+            public void handle(JsonNode element) {
+                elements.add(element);
+            }
+        });
+        assertEquals(3, count);
+        assertEquals("t2", elements.get(1).get("Title").asText());
+
+        final List<String> titles = new ArrayList<String>();
+        @SuppressWarnings("rawtypes")
+        final int count2 = JsonHandler.forEachArrayElement(new StringReader(ARRAY), Map.class,
+                new InterfaceJsonElementHandler<Map>() {
+                    @Override
+                    public void handle(Map element) {
+                        titles.add((String) element.get("Title"));
+                    }
+                });
+        assertEquals(3, count2);
+        assertEquals("t3", titles.get(2));
+
+        assertEquals(0, JsonHandler.forEachArrayElement(stream("[]"), new InterfaceJsonElementHandler<JsonNode>() {
+            @Override
+            public void handle(JsonNode element) {
+                fail("Should not be called");
+            }
+        }));
+    }
+
+    @Test
+    public void testForEachArrayElementErrors() {
+        final InterfaceJsonElementHandler<JsonNode> handler = new InterfaceJsonElementHandler<JsonNode>() {
+            @Override
+            public void handle(JsonNode element) throws InvalidParseOperationException {
+                if (element.has("Stop")) {
+                    throw new InvalidParseOperationException("Stop");
+                }
+            }
+        };
+        for (final String invalid : new String[] { "{\"a\":1}", "[{\"a\":1},", "[{\"a\":1},{\"Stop\":1}]" }) {
+            try {
+                JsonHandler.forEachArrayElement(stream(invalid), handler);
+                fail("Should raise an InvalidParseOperationException");
+            } catch (final InvalidParseOperationException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Test
+    public void testGenerator() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final JsonGenerator generator = JsonHandler.createGenerator(output);
+        generator.writeStartArray();
+        for (int i = 0; i < 3; i++) {
+            generator.writeObject(JsonHandler.getFromString("{\"Title\":\"t" + i + "\"}"));
+        }
+        generator.writeEndArray();
+        generator.close();
+        final JsonNode node = JsonHandler.getFromBytes(output.toByteArray());
+        assertTrue(node.isArray());
+        assertEquals(3, node.size());
+        assertEquals("t2", node.get(2).get("Title").asText());
+    }
+
+    @Test
+    public void testCompactOutput() throws Exception {
+        final JsonNode node = JsonHandler.getFromString("{\"Title\":\"Évènement été\",\"Level\":[1,2]}");
+        assertTrue(JsonHandler.writeAsString(node).contains("\\u"));
+        final byte[] bytes = JsonHandler.writeAsBytes(node);
+        final String compact = new String(bytes, StandardCharsets.UTF_8);
+        assertEquals("{\"Title\":\"Évènement été\",\"Level\":[1,2]}", compact);
+        assertFalse(compact.contains("\n"));
+        assertEquals(node, JsonHandler.getFromBytes(bytes));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("Should not be closed");
+            }
+        };
+        JsonHandler.writeTo(node, output);
+        JsonHandler.writeTo(node, output);
+        final byte[] twice = output.toByteArray();
+        assertEquals(2 * bytes.length, twice.length);
+        assertArrayEquals(bytes, Arrays.copyOf(twice, bytes.length));
+    }
+
+    @Test
+    public void testByteBufferAndChannel() throws Exception {
+        final JsonNode node = JsonHandler.getFromString("{\"Title\":\"Évènement\",\"Level\":[1,2]}");
+        final byte[] bytes = JsonHandler.writeAsBytes(node);
+
+        final ByteBuffer heap = ByteBuffer.allocate(bytes.length + 4);
+        heap.putShort((short) 0).put(bytes).putShort((short) 0);
+        heap.position(2);
+        heap.limit(2 + bytes.length);
+        assertEquals(node, JsonHandler.getFromByteBuffer(heap.slice()));
+        assertEquals(node, JsonHandler.getFromByteBuffer(heap));
+        assertEquals(heap.limit(), heap.position());
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(node, JsonHandler.getFromByteBuffer(direct));
+        assertFalse(direct.hasRemaining());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JsonHandler.writeTo(node, Channels.newChannel(output));
+        assertArrayEquals(bytes, output.toByteArray());
+        assertEquals(node, JsonHandler.getFromChannel(Channels.newChannel(new ByteArrayInputStream(bytes))));
+
+        // trailing content is rejected instead of being silently dropped
+        final byte[] trailing = "{\"a\":1} {\"b\":2}".getBytes("UTF-8");
+        try {
+            JsonHandler.getFromByteBuffer(ByteBuffer.wrap(trailing));
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        }
+        final ByteBuffer directTrailing = ByteBuffer.allocateDirect(trailing.length);
+        directTrailing.put(trailing).flip();
+        try {
+            JsonHandler.getFromByteBuffer(directTrailing);
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        }
+        try {
+            JsonHandler.getFromChannel(Channels.newChannel(new ByteArrayInputStream(trailing)));
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        }
+        assertEquals(node, JsonHandler.getFromByteBuffer(ByteBuffer.wrap((new String(bytes, "UTF-8") + " \n")
+                .getBytes("UTF-8"))));
+    }
+
+    public static class Unit {
+        public String title;
+
+        public int level;
+    }
+
+    @Test
+    public void testTypedHandles() throws Exception {
+        assertSame(JsonHandler.reader(Unit.class), JsonHandler.reader(Unit.class));
+        assertSame(JsonHandler.compactWriter(Unit.class), JsonHandler.compactWriter(Unit.class));
+        final Unit unit = JsonHandler.reader(Unit.class).readValue("{\"Title\":\"t\",\"Level\":2}");
+        assertEquals("t", unit.title);
+        assertEquals(2, unit.level);
+        assertEquals("{\"Title\":\"t\",\"Level\":2}", JsonHandler.compactWriter(Unit.class).writeValueAsString(unit));
+        assertEquals(2, JsonHandler.getFromString("{\"Title\":\"t\",\"Level\":2}", Unit.class).level);
+
+        final List<Unit> units = JsonHandler.reader(new TypeReference<List<Unit>>() {
+        }).readValue("[{\"Title\":\"a\"},{\"Title\":\"b\"}]");
+        assertEquals("b", units.get(1).title);
+        assertEquals(2, JsonHandler.getMapFromString("{\"a\":1,\"b\":{\"c\":2}}").size());
+
+        final Unit xml = XmlHandler.getFromString(XmlHandler.writer(Unit.class).writeValueAsString(unit), Unit.class);
+        assertEquals("t", xml.title);
+        assertSame(XmlHandler.reader(Unit.class), XmlHandler.reader(Unit.class));
+    }
+
+    @Test
+    public void testSmile() throws Exception {
+        final JsonNode unit = JsonFormatBenchmark.createArchiveUnit(20);
+        final byte[] smile = JsonHandler.writeAsBytes(unit, JsonFormat.SMILE);
+        final byte[] json = JsonHandler.writeAsBytes(unit, JsonFormat.JSON);
+        assertArrayEquals(JsonHandler.writeAsBytes(unit), json);
+        assertTrue(smile.length < json.length);
+        assertEquals(unit, JsonHandler.getFromBytes(smile, JsonFormat.SMILE));
+        assertEquals(unit, JsonHandler.getFromBytes(json, JsonFormat.JSON));
+
+        final Unit pojo = new Unit();
+        pojo.title = "Été";
+        pojo.level = 3;
+        final Unit read = JsonHandler.getFromBytes(JsonHandler.writeAsBytes(pojo, JsonFormat.SMILE), Unit.class,
+                JsonFormat.SMILE);
+        assertEquals("Été", read.title);
+        assertEquals(3, read.level);
+        try {
+            JsonHandler.getFromBytes(json, JsonFormat.SMILE);
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+@SuppressWarnings("javadoc")
+public class JsonPathTest {
+    private static final String DOCUMENT = "{\"Id\":\"x\",\"Skip\":{\"a\":[1,{\"b\":2}]},"
+            + "\"Title\":{\"lang\":[{\"fr\":\"Été\"},{\"en\":\"Summer\"}],\"main\":\"t\"},\"my field\":3}";
+
+    @Test
+    public void testEvaluate() throws Exception {
+        final JsonNode root = JsonHandler.getFromString(DOCUMENT);
+        final byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        final String[][] cases = { { "$.Title.lang[0].fr", "\"Été\"" }, { "$.Title.lang[1]", "{\"en\":\"Summer\"}" },
+            { "$['Title'][\"main\"]", "\"t\"" }, { "$['my field']", "3" }, { "$.Id", "\"x\"" },
+            { "$", root.toString() } };
+        for (final String[] test : cases) {
+            final JsonPath path = JsonPath.compile(test[0]);
+            assertEquals(test[0], test[1], path.evaluate(root).toString());
+            assertEquals(test[0], test[1], path.evaluate(bytes).toString());
+        }
+        for (final String missing : new String[] { "$.Title.lang[2]", "$.Title.none", "$.Id.sub", "$[0]",
+            "$.Title.lang.fr" }) {
+            final JsonPath path = JsonPath.compile(missing);
+            assertNull(missing, path.evaluate(root));
+            assertNull(missing, path.evaluate(bytes));
+        }
+    }
+
+    @Test
+    public void testInvalidExpression() {
+        for (final String invalid : new String[] { null, "Title", "$..a", "$[a]", "$[-1]", "$[0", "$a" }) {
+            try {
+                JsonPath.compile(invalid);
+                fail("Should raise an InvalidParseOperationException: " + invalid);
+            } catch (final InvalidParseOperationException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+@SuppressWarnings("javadoc")
+public class LazyJsonNodeTest {
+    private static final String DOCUMENT = " {\"Title\":\"Été \\\"été\\\"\",\"Unit\":{\"a\":[1,{\"b\":\"ü\"}],\"c\":null},"
+            + "\"Level\":12.5,\"Flag\":true,\"None\":null,\"Keywords\":[\"é\",\"è\"],\"Last\":-3} ";
+
+    @Test
+    public void testLazyAccess() throws Exception {
+        final byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+        final JsonNode tree = JsonHandler.getFromBytes(bytes);
+        final LazyJsonNode lazy = new LazyJsonNode(bytes);
+        assertEquals(tree.size(), lazy.size());
+        final Iterator<String> names = tree.fieldNames();
+        final Iterator<String> lazyNames = lazy.fieldNames();
+        while (names.hasNext()) {
+            final String name = names.next();
+            assertEquals(name, lazyNames.next());
+            assertTrue(lazy.has(name));
+            assertEquals(name, tree.get(name), lazy.get(name));
+        }
+        assertFalse(lazyNames.hasNext());
+        assertNull(lazy.get("Missing"));
+        assertTrue(lazy.path("Missing").isMissingNode());
+        assertEquals("ü", lazy.path("Unit").path("a").path(1).path("b").asText());
+        assertEquals(tree, lazy.toObjectNode());
+    }
+
+    @Test
+    public void testLaxSyntax() throws Exception {
+        final LazyJsonNode lazy = new LazyJsonNode("{ a : 1 ,\n 'b\\'c' :'x', \"d\\\"\" : [ 2 ] }"
+                .getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, lazy.get("a").asInt());
+        assertEquals("x", lazy.get("b'c").asText());
+        assertEquals(2, lazy.get("d\"").get(0).asInt());
+    }
+
+    @Test
+    public void testDuplicateField() throws Exception {
+        final LazyJsonNode lazy = new LazyJsonNode("{\"a\":1,\"a\":2}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, lazy.size());
+        assertEquals(2, lazy.get("a").asInt());
+    }
+
+    @Test
+    public void testInvalidDocument() {
+        for (final String invalid : new String[] { "[1,2]", "{\"a\":[1,}", "{\"a\":1", "" }) {
+            try {
+                new LazyJsonNode(invalid.getBytes(StandardCharsets.UTF_8));
+                fail("Should raise an InvalidParseOperationException: " + invalid);
+            } catch (final InvalidParseOperationException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+@SuppressWarnings("javadoc")
+public class NdJsonPipelineTest {
+    private static final int LINES = 5000;
+
+    /**
+     * Every 100th line is invalid, every 250th is blank, and line 3 is longer than the chunks
+     */
+    private static byte[] createInput() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= LINES; i++) {
+            if (i % 100 == 0) {
+                builder.append("{\"Id\":").append(i).append(",");
+            } else if (i % 250 == 0) {
+                builder.append("  ");
+            } else if (i == 3) {
+                builder.append("{\"Id\":3,\"Title\":\"");
+                for (int j = 0; j < 500; j++) {
+                    builder.append('é');
+                }
+                builder.append("\"}\r");
+            } else {
+                builder.append("{\"Id\":").append(i).append("}");
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Collector implements InterfaceNdJsonConsumer {
+        final List<Long> lines = new ArrayList<Long>();
+
+        final List<Long> errors = new ArrayList<Long>();
+
+        @Override
+        public void accept(long lineNumber, JsonNode node) {
+            assertEquals(lineNumber, node.get("Id").asLong());
+            lines.add(lineNumber);
+        }
+
+        @Override
+        public void error(long lineNumber, InvalidParseOperationException error)
+                throws InvalidParseOperationException {
+            errors.add(lineNumber);
+        }
+    }
+
+    private static void check(Collector collector, long valid) {
+        assertEquals(LINES - 50 - 10, valid);
+        assertEquals(valid, collector.lines.size());
+        assertEquals(50, collector.errors.size());
+        assertTrue(collector.errors.contains(5000L));
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        final NdJsonPipeline pipeline = new NdJsonPipeline(2, 64, 2, true);
+        try {
+            final Collector collector = new Collector();
+            check(collector, pipeline.process(new ByteArrayInputStream(createInput()), collector));
+            final List<Long> sorted = new ArrayList<Long>(collector.lines);
+            Collections.sort(sorted);
+            assertEquals(sorted, collector.lines);
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testDeliveredChunksReleased() throws Exception {
+        final NdJsonPipeline pipeline = new NdJsonPipeline(2, 64, 2, true);
+        try {
+            final List<WeakReference<JsonNode>> first = new ArrayList<WeakReference<JsonNode>>();
+            final List<Boolean> released = new ArrayList<Boolean>();
+            pipeline.process(new ByteArrayInputStream(createInput()), new Collector() {
+                @Override
+                public void accept(long lineNumber, JsonNode node) {
+                    if (lineNumber == 1) {
+                        first.add(new WeakReference<JsonNode>(node));
+                    } else if (lineNumber == LINES - 1) {
+                        for (int i = 0; i < 10 && first.get(0).get() != null; i++) {
+                            System.gc();
+                        }
+                        released.add(first.get(0).get() == null);
+                    }
+                }
+            });
+            assertEquals(Collections.singletonList(Boolean.TRUE), released);
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testUnorderedFile() throws Exception {
+        final File file = File.createTempFile("pipeline", ".ndjson");
+        final NdJsonPipeline pipeline = new NdJsonPipeline(4, 1024, 8, false);
+        try {
+            try (OutputStream output = new FileOutputStream(file)) {
+                output.write(createInput());
+            }
+            final Collector collector = new Collector();
+            check(collector, pipeline.process(file, collector));
+            assertTrue(collector.lines.contains(3L));
+        } finally {
+            pipeline.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTrailingContent() throws Exception {
+        final NdJsonPipeline pipeline = new NdJsonPipeline(2, 64, 2, true);
+        try {
+            final Collector collector = new Collector();
+            final byte[] input = "{\"Id\":1}\n{\"Id\":2} {\"Id\":3}\n{\"Id\":3} garbage\n{\"Id\":4}\n"
+                    .getBytes(StandardCharsets.UTF_8);
+            assertEquals(2, pipeline.process(new ByteArrayInputStream(input), collector));
+            assertEquals(Arrays.asList(1L, 4L), collector.lines);
+            assertEquals(Arrays.asList(2L, 3L), collector.errors);
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void testConsumerStops() throws IOException {
+        final NdJsonPipeline pipeline = new NdJsonPipeline();
+        try {
+            pipeline.process(new ByteArrayInputStream(createInput()), new Collector() {
+                @Override
+                public void error(long lineNumber, InvalidParseOperationException error)
+                        throws InvalidParseOperationException {
+                    throw error;
+                }
+            });
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        } finally {
+            pipeline.close();
+        }
+    }
+}
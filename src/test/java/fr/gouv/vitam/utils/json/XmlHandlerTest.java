@@ -0,0 +1,120 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fr.gouv.vitam.utils.exception.InvalidParseOperationException;
+
+@SuppressWarnings("javadoc")
+public class XmlHandlerTest {
+    private static final String MANIFEST = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<ArchiveTransfer xmlns=\"fr:gouv:culture:archivesdefrance:seda:v2.0\">"
+            + "<Comment>Transfert</Comment><DescriptiveMetadata>"
+            + "<ArchiveUnit id=\"ID1\"><Content><DescriptionLevel>RecordGrp</DescriptionLevel>"
+            + "<Title>Procès-verbal</Title><Title xml:lang=\"en\">Minutes</Title>"
+            + "<Keyword><KeywordContent>Hérault</KeywordContent></Keyword></Content>"
+            + "<ArchiveUnit id=\"ID2\"><Content><Title><![CDATA[Sub <unit>]]></Title></Content></ArchiveUnit>"
+            + "</ArchiveUnit>"
+            + "<ArchiveUnit id=\"ID3\"><Content><Title>Last</Title><Empty/></Content></ArchiveUnit>"
+            + "</DescriptiveMetadata></ArchiveTransfer>";
+
+    @Test
+    public void testForEachElement() throws Exception {
+        final List<JsonNode> units = new ArrayList<JsonNode>();
+        final int count = XmlHandler.forEachElement(new ByteArrayInputStream(MANIFEST.getBytes(StandardCharsets.UTF_8)),
+                "ArchiveUnit", new InterfaceJsonElementHandler<JsonNode>() {
+                    @Override
+                    public void handle(JsonNode element) {
+                        units.add(element);
+                    }
+                });
+        assertEquals(2, count);
+        final JsonNode first = units.get(0);
+        assertEquals("ID1", first.get("id").asText());
+        final JsonNode content = first.get("Content");
+        assertEquals("RecordGrp", content.get("DescriptionLevel").asText());
+        assertEquals(2, content.get("Title").size());
+        assertEquals("Procès-verbal", content.get("Title").get(0).asText());
+        assertEquals("Minutes", content.get("Title").get(1).get(XmlHandler.TEXT_FIELD).asText());
+        assertEquals("en", content.get("Title").get(1).get("lang").asText());
+        assertEquals("Hérault", content.get("Keyword").get("KeywordContent").asText());
+        assertEquals("Sub <unit>", first.get("ArchiveUnit").get("Content").get("Title").asText());
+        assertEquals("ID3", units.get(1).get("id").asText());
+        assertEquals("", units.get(1).get("Content").get("Empty").asText());
+    }
+
+    @Test
+    public void testInvalidXml() {
+        try {
+            XmlHandler.forEachElement(new ByteArrayInputStream("<a><b></a>".getBytes(StandardCharsets.UTF_8)), "b",
+                    new InterfaceJsonElementHandler<JsonNode>() {
+                        @Override
+                        public void handle(JsonNode element) {
+                            // nothing
+                        }
+                    });
+            fail("Should raise an InvalidParseOperationException");
+        } catch (final InvalidParseOperationException e) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testExternalEntity() throws Exception {
+        final File secret = File.createTempFile("secret", ".txt");
+        try {
+            try (OutputStream output = new FileOutputStream(secret)) {
+                output.write("secret-content".getBytes(StandardCharsets.UTF_8));
+            }
+            final String xml = "<?xml version=\"1.0\"?><!DOCTYPE r [<!ENTITY x SYSTEM \"" + secret.toURI()
+                    + "\">]><r><t>&x;</t></r>";
+            final List<JsonNode> elements = new ArrayList<JsonNode>();
+            try {
+                XmlHandler.forEachElement(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "t",
+                        new InterfaceJsonElementHandler<JsonNode>() {
+                            @Override
+                            public void handle(JsonNode element) {
+                                elements.add(element);
+                            }
+                        });
+            } catch (final InvalidParseOperationException e) {
+                // ignore
+            }
+            // rejected or not expanded
+            assertFalse(elements.toString().contains("secret-content"));
+        } finally {
+            secret.delete();
+        }
+    }
+}
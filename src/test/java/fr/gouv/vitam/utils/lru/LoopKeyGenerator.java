@@ -0,0 +1,51 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Loop-heavy key generator: keys 0 to items - 1 are accessed cyclically, which defeats LRU as
+ * soon as items is greater than the capacity
+ */
+public class LoopKeyGenerator implements InterfaceKeyGenerator {
+    private final int items;
+
+    private int current;
+
+    /**
+     * 
+     * @param items
+     *            length of the loop
+     * @param start
+     *            first key of the loop
+     */
+    public LoopKeyGenerator(int items, int start) {
+        this.items = items;
+        current = Math.abs(start % items);
+    }
+
+    @Override
+    public int next() {
+        final int key = current;
+        current++;
+        if (current == items) {
+            current = 0;
+        }
+        return key;
+    }
+}
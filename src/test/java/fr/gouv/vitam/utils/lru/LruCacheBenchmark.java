@@ -0,0 +1,190 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH throughput and latency benchmarks of get, put and remove of the LruCache implementations (not
+ * run by the tests, see LruForceClearBenchmark for forceClearOldest).
+ * 
+ * The number of threads is given by the JMH -t option, the other dimensions by the parameters:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="LruCacheBenchmark -t 4 -p readPercent=95"
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LruCacheBenchmark {
+    private static final long TTL = 3600000;
+
+    /**
+     * Implementation under test
+     */
+    @Param({ "synchronized", "sampled" })
+    public String implementation;
+
+    /**
+     * Capacity of the cache
+     */
+    @Param({ "1000", "100000" })
+    public int capacity;
+
+    /**
+     * Key distribution
+     */
+    @Param({ "ZIPF", "SCAN", "LOOP" })
+    public LruWorkload workload;
+
+    /**
+     * Percentage of reads of the mixed benchmark
+     */
+    @Param({ "50", "95" })
+    public int readPercent;
+
+    InterfaceLruCache<Integer, Integer> cache;
+
+    int items;
+
+    /**
+     * Creates and fills the cache
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = newCache(implementation, capacity);
+        items = capacity * 10;
+        final InterfaceKeyGenerator generator = workload.newGenerator(items, -1);
+        for (int i = 0; i < capacity; i++) {
+            final Integer key = generator.next();
+            cache.put(key, key);
+        }
+    }
+
+    /**
+     * Releases the cache
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    static InterfaceLruCache<Integer, Integer> newCache(String implementation, int capacity) {
+        if ("sampled".equals(implementation)) {
+            return new SampledLruCache<Integer, Integer>(capacity, TTL);
+        }
+        return new SynchronizedLruCache<Integer, Integer>(capacity, TTL);
+    }
+
+    /**
+     * Keys of one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+        InterfaceKeyGenerator generator;
+
+        int operation;
+
+        /**
+         * 
+         * @param benchmark
+         */
+        @Setup(Level.Trial)
+        public void setUp(LruCacheBenchmark benchmark) {
+            generator = benchmark.workload.newGenerator(benchmark.items, System.identityHashCode(this));
+        }
+
+        Integer next() {
+            return generator.next();
+        }
+
+        boolean isRead(int readPercent) {
+            operation = (operation + 1) % 100;
+            return operation < readPercent;
+        }
+    }
+
+    /**
+     * 
+     * @param keys
+     * @return the cached value or null
+     */
+    @Benchmark
+    public Integer get(ThreadKeys keys) {
+        return cache.get(keys.next());
+    }
+
+    /**
+     * 
+     * @param keys
+     */
+    @Benchmark
+    public void put(ThreadKeys keys) {
+        final Integer key = keys.next();
+        cache.put(key, key);
+    }
+
+    /**
+     * Removes then puts back the key, so that the cache keeps its size
+     * 
+     * @param keys
+     * @return the removed value or null
+     */
+    @Benchmark
+    public Integer remove(ThreadKeys keys) {
+        final Integer key = keys.next();
+        final Integer value = cache.remove(key);
+        cache.put(key, key);
+        return value;
+    }
+
+    /**
+     * readPercent reads, the others being writes, a miss being loaded into the cache
+     * 
+     * @param keys
+     * @return the cached value or null
+     */
+    @Benchmark
+    public Integer mixed(ThreadKeys keys) {
+        final Integer key = keys.next();
+        if (keys.isRead(readPercent)) {
+            final Integer value = cache.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        cache.put(key, key);
+        return key;
+    }
+}
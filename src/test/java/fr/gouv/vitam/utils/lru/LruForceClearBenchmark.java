@@ -0,0 +1,84 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of forceClearOldest over a full cache of expired entries (not run by the tests).
+ * 
+ * Each iteration fills a new cache, so that one single shot measures a complete cleaning.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 1)
+@Measurement(iterations = 20, batchSize = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LruForceClearBenchmark {
+    /**
+     * Implementation under test
+     */
+    @Param({ "synchronized", "sampled" })
+    public String implementation;
+
+    /**
+     * Capacity of the cache
+     */
+    @Param({ "1000", "100000" })
+    public int capacity;
+
+    InterfaceLruCache<Integer, Integer> cache;
+
+    /**
+     * Fills the cache with entries expiring immediately
+     * 
+     * @throws InterruptedException
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws InterruptedException {
+        cache = LruCacheBenchmark.newCache(implementation, capacity);
+        for (int i = 0; i < capacity; i++) {
+            cache.put(i, i, 1);
+        }
+        Thread.sleep(5);
+    }
+
+    /**
+     * 
+     * @return the number of entries cleared
+     */
+    @Benchmark
+    public int forceClearOldest() {
+        return cache.forceClearOldest();
+    }
+}
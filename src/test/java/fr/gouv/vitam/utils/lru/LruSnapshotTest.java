@@ -0,0 +1,137 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@SuppressWarnings("javadoc")
+public class LruSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotWithValues() throws Exception {
+        final StringLruCodec codec = new StringLruCodec();
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(4, 10000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.put("expired", "4", 1);
+        cache.get("a");
+        final File file = new File(folder.getRoot(), "cache.snapshot");
+        Thread.sleep(5);
+        assertEquals(3, cache.saveSnapshot(file, codec, codec));
+
+        final SynchronizedLruCache<String, String> restored = new SynchronizedLruCache<String, String>(2, 10000);
+        assertEquals(3, restored.restoreSnapshot(file, codec, codec));
+        // LRU order is kept: "b" was the least recently used
+        assertEquals(2, restored.size());
+        assertNull(restored.get("b"));
+        assertEquals("1", restored.get("a"));
+        assertEquals("3", restored.get("c"));
+
+        // corrupted snapshot
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(10);
+        raf.write(0x7F);
+        raf.close();
+        try {
+            restored.restoreSnapshot(file, codec, codec);
+            fail("Should raise an IOException");
+        } catch (final IOException e) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testSnapshotKeysWithLoader() throws Exception {
+        final StringLruCodec codec = new StringLruCodec();
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(100, 10000);
+        for (int i = 0; i < 50; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        cache.put("short", "vshort", 200);
+        cache.put("expired", "vexpired", 1);
+        final File file = new File(folder.getRoot(), "keys.snapshot");
+        Thread.sleep(5);
+        assertEquals(51, cache.saveSnapshot(file, codec, null));
+
+        final SynchronizedLruCache<String, String> restored = new SynchronizedLruCache<String, String>(100, 10000);
+        // a snapshot without values cannot restore values directly
+        assertEquals(0, restored.restoreSnapshot(file, codec, codec));
+        assertEquals(51, restored.restoreSnapshot(file, codec, new InterfaceLruBatchLoader<String, String>() {
+            @Override
+            public Map<String, String> loadAll(Set<String> keys) throws Exception {
+                assertTrue(keys.size() <= 7);
+                final Map<String, String> values = new HashMap<String, String>();
+                for (final String key : keys) {
+                    values.put(key, "v" + key.substring(1));
+                }
+                return values;
+            }
+        }, 4, 7));
+        assertEquals(51, restored.size());
+        assertEquals("v42", restored.get("k42"));
+        // the remaining ttl of each key is kept
+        assertEquals("vhort", restored.get("short"));
+        Thread.sleep(250);
+        assertNull(restored.get("short"));
+        assertEquals("v42", restored.get("k42"));
+    }
+
+    @Test
+    public void testParallelRestore() throws Exception {
+        final StringLruCodec codec = new StringLruCodec();
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(1000, 10000);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        final File file = new File(folder.getRoot(), "values.snapshot");
+        assertEquals(1000, cache.saveSnapshot(file, codec, codec));
+
+        final SynchronizedLruCache<String, String> restored = new SynchronizedLruCache<String, String>(100, 10000);
+        assertEquals(1000, restored.restoreSnapshot(file, codec, codec, 4, 30));
+        // batches are put in LRU order whatever their decoding order
+        assertEquals(100, restored.size());
+        assertNull(restored.get("k899"));
+        for (int i = 900; i < 1000; i++) {
+            assertEquals("v" + i, restored.get("k" + i));
+        }
+        try {
+            restored.restoreSnapshot(file, codec, codec, 0, 30);
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+    }
+}
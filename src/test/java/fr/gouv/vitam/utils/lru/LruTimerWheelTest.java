@@ -0,0 +1,113 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class LruTimerWheelTest {
+
+    @Test
+    public void testAdvance() {
+        final long start = 1000000000L;
+        final LruTimerWheel<Integer> wheel = new LruTimerWheel<Integer>(start);
+        final Map<Integer, Long> expirations = new HashMap<Integer, Long>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            // from 1 ms to about 30 days
+            final long ttl = 1 + (long) Math.pow(2, random.nextDouble() * 31);
+            expirations.put(i, start + ttl);
+            wheel.schedule(i, start + ttl, ttl);
+        }
+        // rescheduled and descheduled keys
+        for (int i = 0; i < 100; i++) {
+            expirations.put(i, start + 5000);
+            wheel.reschedule(i, start + 5000);
+            wheel.deschedule(i + 100);
+            expirations.remove(i + 100);
+        }
+        assertEquals(9900, wheel.size());
+        long now = start;
+        while (!expirations.isEmpty()) {
+            now += 1 + random.nextInt(1 << random.nextInt(28));
+            for (final Integer key : wheel.advance(now)) {
+                final Long expiration = expirations.remove(key);
+                assertTrue(expiration < now);
+            }
+            for (final Long expiration : expirations.values()) {
+                assertTrue(expiration >= now);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testEntryExpiration() throws InterruptedException {
+        final LruTimerWheel<String> wheel = new LruTimerWheel<String>(System.currentTimeMillis());
+        final StrongReferenceCacheEntry<String> entry = new StrongReferenceCacheEntry<String>("value", 10, 1);
+        wheel.schedule("key", entry, 10);
+        // the entry got a later expiration time without rescheduling the key
+        entry.resetTime(10000);
+        Thread.sleep(20);
+        assertTrue(wheel.advance(System.currentTimeMillis()).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(10, wheel.getTtl("key"));
+        assertTrue(wheel.advance(entry.getExpirationTime()).isEmpty());
+        assertEquals("key", wheel.advance(entry.getExpirationTime() + 1).get(0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testExpireAfterWriteIndex() throws InterruptedException {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(100, 10000);
+        cache.put("short", "1", 10);
+        cache.put("long", "2");
+        cache.put("updated", "3", 10);
+        cache.updateTtl("updated");
+        Thread.sleep(20);
+        assertEquals(1, cache.forceClearOldest());
+        assertEquals(2, cache.size());
+        assertEquals("3", cache.get("updated"));
+    }
+
+    @Test
+    public void testExpireAfterAccess() throws InterruptedException {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(100, 10000);
+        cache.setExpiryPolicy(LruExpiryPolicy.AFTER_ACCESS);
+        assertEquals(LruExpiryPolicy.AFTER_ACCESS, cache.getExpiryPolicy());
+        cache.put("read", "1", 100);
+        cache.put("unread", "2", 100);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            assertEquals("1", cache.get("read"));
+        }
+        assertFalse(cache.contains("unread"));
+        Thread.sleep(150);
+        assertNull(cache.get("read"));
+    }
+}
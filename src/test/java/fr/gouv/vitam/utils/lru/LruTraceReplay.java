@@ -0,0 +1,132 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays an access trace against the LruCache implementations and reports their hit ratio (not
+ * run by the tests).
+ * 
+ * On a miss, the key is put in the cache, as a read-through cache would do. The trace is either a
+ * file of one key per line, or a synthetic workload.
+ * 
+ * Usage: LruTraceReplay capacity (traceFile | ZIPF|SCAN|LOOP [items [accesses]])
+ */
+public class LruTraceReplay {
+    private static final long TTL = 3600000;
+
+    private LruTraceReplay() {
+        // Unused
+    }
+
+    /**
+     * 
+     * @param cache
+     * @param trace
+     * @return the hit ratio of the cache over the trace
+     */
+    public static <K> double replay(InterfaceLruCache<K, K> cache, Iterable<K> trace) {
+        long accesses = 0;
+        long hits = 0;
+        for (final K key : trace) {
+            accesses++;
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            } else {
+                hits++;
+            }
+        }
+        return accesses == 0 ? 0 : (double) hits / accesses;
+    }
+
+    /**
+     * 
+     * @param generator
+     * @param accesses
+     * @return the trace of the given number of generated keys
+     */
+    public static List<Integer> generate(InterfaceKeyGenerator generator, int accesses) {
+        final List<Integer> trace = new ArrayList<Integer>(accesses);
+        for (int i = 0; i < accesses; i++) {
+            trace.add(generator.next());
+        }
+        return trace;
+    }
+
+    /**
+     * 
+     * @param file
+     *            one key per line, blank lines being ignored
+     * @return the trace
+     * @throws IOException
+     */
+    public static List<String> read(File file) throws IOException {
+        final List<String> trace = new ArrayList<String>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    trace.add(line);
+                }
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: LruTraceReplay capacity (traceFile | ZIPF|SCAN|LOOP [items [accesses]])");
+            return;
+        }
+        final int capacity = Integer.parseInt(args[0]);
+        final File file = new File(args[1]);
+        if (file.isFile()) {
+            final List<String> trace = read(file);
+            report(args[1], trace.size(),
+                    replay(new SynchronizedLruCache<String, String>(capacity, TTL), trace),
+                    replay(new SampledLruCache<String, String>(capacity, TTL), trace));
+        } else {
+            final LruWorkload workload = LruWorkload.valueOf(args[1]);
+            final int items = args.length > 2 ? Integer.parseInt(args[2]) : capacity * 10;
+            final int accesses = args.length > 3 ? Integer.parseInt(args[3]) : items * 10;
+            final List<Integer> trace = generate(workload.newGenerator(items, 0), accesses);
+            report(workload.name(), accesses,
+                    replay(new SynchronizedLruCache<Integer, Integer>(capacity, TTL), trace),
+                    replay(new SampledLruCache<Integer, Integer>(capacity, TTL), trace));
+        }
+    }
+
+    private static void report(String name, int accesses, double synchronizedRatio, double sampledRatio) {
+        System.out.printf("%s (%d accesses)%n", name, accesses);
+        System.out.printf("  %-22s hit ratio %6.2f%%%n", "SynchronizedLruCache", 100 * synchronizedRatio);
+        System.out.printf("  %-22s hit ratio %6.2f%%%n", "SampledLruCache", 100 * sampledRatio);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class LruTraceReplayTest {
+
+    @Test
+    public void testLoopDefeatsLru() {
+        final List<Integer> trace = LruTraceReplay.generate(new LoopKeyGenerator(101, 0), 10000);
+        assertEquals(0.0,
+                LruTraceReplay.replay(new SynchronizedLruCache<Integer, Integer>(100, 10000), trace), 0.0);
+        // the whole loop fits
+        assertTrue(LruTraceReplay.replay(new SynchronizedLruCache<Integer, Integer>(101, 10000), trace) > 0.98);
+    }
+
+    @Test
+    public void testGenerators() {
+        for (final LruWorkload workload : LruWorkload.values()) {
+            final InterfaceKeyGenerator generator = workload.newGenerator(1000, 1);
+            for (int i = 0; i < 10000; i++) {
+                final int key = generator.next();
+                assertTrue(workload + " " + key, key >= 0 && key < 1000);
+            }
+        }
+        // Zipfian accesses are skewed, so a small cache already hits
+        final List<Integer> trace = LruTraceReplay.generate(LruWorkload.ZIPF.newGenerator(10000, 1), 20000);
+        assertTrue(LruTraceReplay.replay(new SynchronizedLruCache<Integer, Integer>(100, 10000), trace) > 0.2);
+    }
+
+    @Test
+    public void testReadTrace() throws IOException {
+        final File file = File.createTempFile("trace", ".txt");
+        try {
+            Files.write(file.toPath(), "a\nb\n\na\nc\na\n".getBytes(StandardCharsets.UTF_8));
+            final List<String> trace = LruTraceReplay.read(file);
+            assertEquals(5, trace.size());
+            assertEquals(0.4,
+                    LruTraceReplay.replay(new SynchronizedLruCache<String, String>(2, 10000), trace), 0.001);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+/**
+ * Synthetic workloads of the benchmarks and of the trace replay
+ */
+public enum LruWorkload {
+    /**
+     * Zipfian accesses (theta 0.99)
+     */
+    ZIPF,
+    /**
+     * Zipfian hot set interrupted by sequential scans
+     */
+    SCAN,
+    /**
+     * Cyclic accesses over all keys
+     */
+    LOOP;
+
+    /**
+     * 
+     * @param items
+     *            number of distinct keys
+     * @param seed
+     * @return a new generator for this workload
+     */
+    public InterfaceKeyGenerator newGenerator(int items, long seed) {
+        switch (this) {
+            case SCAN:
+                return new ScanKeyGenerator(items, Math.max(1, items / 100), 0.001, seed);
+            case LOOP:
+                return new LoopKeyGenerator(items, (int) seed * 7919);
+            case ZIPF:
+            default:
+                return new ZipfGenerator(items, 0.99, seed);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class OffHeapLruCacheTest {
+
+    private static byte[] value(int size, int seed) {
+        final byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) seed);
+        return bytes;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testPutGet() {
+        final OffHeapLruCache<String> cache = new OffHeapLruCache<String>(100, 10000, 4096, 1024);
+        cache.put("a", value(100, 1));
+        cache.put("b", value(200, 2));
+        final ByteBuffer a = cache.get("a");
+        assertTrue(a.isReadOnly());
+        assertTrue(Arrays.equals(value(100, 1), toBytes(a)));
+        assertEquals(300, cache.getWeightedSize());
+        cache.put("a", value(50, 3));
+        assertTrue(Arrays.equals(value(50, 3), toBytes(cache.get("a"))));
+        assertEquals(250, cache.getWeightedSize());
+        assertTrue(Arrays.equals(value(200, 2), toBytes(cache.remove("b"))));
+        assertEquals(50, cache.getWeightedSize());
+        // too big for a slab
+        cache.put("a", value(2000, 4));
+        assertNull(cache.get("a"));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testEvictionAndCompaction() {
+        final OffHeapLruCache<Integer> cache = new OffHeapLruCache<Integer>(1000, 10000, 4096, 1024);
+        for (int i = 0; i < 16; i++) {
+            cache.put(i, value(256, i));
+        }
+        assertEquals(4096, cache.getAllocatedBytes());
+        final ByteBuffer view = cache.get(1);
+        // removing half of the entries leaves dead bytes in all slabs
+        for (int i = 0; i < 16; i += 2) {
+            cache.remove(i);
+        }
+        // new values are written through compaction, not eviction
+        for (int i = 16; i < 20; i++) {
+            cache.put(i, value(256, i));
+        }
+        assertEquals(12, cache.size());
+        for (int i = 1; i < 16; i += 2) {
+            assertTrue(Arrays.equals(value(256, i), toBytes(cache.get(i))));
+        }
+        // a view obtained before compaction remains valid
+        assertTrue(Arrays.equals(value(256, 1), toBytes(view)));
+        // no more free space: least recently used entries are evicted
+        for (int i = 20; i < 30; i++) {
+            cache.put(i, value(512, i));
+        }
+        assertTrue(cache.getWeightedSize() <= cache.getMaximumWeight());
+        assertTrue(cache.getAllocatedBytes() <= cache.getMaximumWeight());
+        assertFalse(cache.contains(1));
+        assertTrue(Arrays.equals(value(512, 29), toBytes(cache.get(29))));
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        final OffHeapLruCache<String> cache = new OffHeapLruCache<String>(10, 50, 4096, 1024);
+        cache.put("a", value(10, 1));
+        cache.put("b", value(10, 2), 10000);
+        Thread.sleep(100);
+        assertEquals(1, cache.forceClearOldest());
+        assertNull(cache.get("a"));
+        assertEquals(10, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testConcurrentUpdateTtl() throws InterruptedException {
+        final OffHeapLruCache<Integer> cache = new OffHeapLruCache<Integer>(50, 10000, 64 * 1024, 1024);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            final int key = (i * 7 + id) % 100;
+                            if (id % 2 == 0) {
+                                cache.updateTtl(key);
+                            } else {
+                                cache.put(key, value(16, key));
+                                cache.get(key);
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(cache.size() <= 50);
+        assertEquals(cache.size() * 16L, cache.getWeightedSize());
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class PartitionedLruCacheTest {
+    /**
+     * Tenant "a" is partition 0, any other is partition 1
+     */
+    private static final InterfaceLruPartitioner<String> TENANT = new InterfaceLruPartitioner<String>() {
+        @Override
+        public int partition(String key, int partitions) {
+            return key.startsWith("a") ? 0 : 1;
+        }
+    };
+
+    @Test
+    public void testIsolation() {
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(TENANT, 2, 3,
+                10000);
+        assertEquals(6, cache.getCapacity());
+        for (int i = 0; i < 3; i++) {
+            cache.put("a" + i, "v");
+        }
+        // a noisy tenant only evicts its own entries
+        for (int i = 0; i < 100; i++) {
+            cache.put("b" + i, "v");
+        }
+        assertEquals(3, cache.getPartitionSize(0));
+        assertEquals(3, cache.getPartitionSize(1));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cache.contains("a" + i));
+        }
+        assertTrue(cache.contains("b99"));
+        assertFalse(cache.contains("b96"));
+    }
+
+    @Test
+    public void testBorrowing() {
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(TENANT, 2, 3,
+                10000);
+        for (int i = 0; i < 5; i++) {
+            cache.put("b" + i, "v");
+        }
+        // unused capacity of "a" is borrowed
+        assertEquals(5, cache.getPartitionSize(1));
+        cache.put("a0", "v");
+        assertEquals(6, cache.size());
+        // "a" gets its quota back from the borrower, oldest first
+        cache.put("a1", "v");
+        assertEquals(2, cache.getPartitionSize(0));
+        assertEquals(4, cache.getPartitionSize(1));
+        assertFalse(cache.contains("b0"));
+        assertTrue(cache.contains("b1"));
+        final Map<String, String> entries = new HashMap<String, String>();
+        entries.put("a2", "v");
+        entries.put("a3", "v");
+        cache.putAll(entries);
+        assertEquals(3, cache.getPartitionSize(0));
+        assertEquals(3, cache.getPartitionSize(1));
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void testWeightQuota() {
+        final InterfaceLruWeigher<String, String> weigher = new InterfaceLruWeigher<String, String>() {
+            @Override
+            public long weigh(String key, String value) {
+                return value.length();
+            }
+        };
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(TENANT,
+                new int[] { 100, 100 }, new long[] { 10, 20 }, 10000, weigher);
+        assertEquals(30, cache.getMaximumWeight());
+        assertEquals(10, cache.getPartitionMaximumWeight(0));
+        cache.put("a0", "1234567890");
+        for (int i = 0; i < 10; i++) {
+            cache.put("b" + i, "12345");
+        }
+        assertEquals(10, cache.getPartitionWeightedSize(0));
+        assertEquals(20, cache.getPartitionWeightedSize(1));
+        assertEquals(30, cache.getWeightedSize());
+        assertTrue(cache.contains("a0"));
+    }
+
+    @Test
+    public void testTotalWeight() {
+        final InterfaceLruWeigher<String, String> weigher = new InterfaceLruWeigher<String, String>() {
+            @Override
+            public long weigh(String key, String value) {
+                return value.length();
+            }
+        };
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(TENANT,
+                new int[] { 2, 2 }, new long[] { 100, 100 }, 10000, weigher);
+        cache.put("a0", "12");
+        cache.put("b0", "123");
+        assertEquals(5, cache.getWeightedSize());
+        // replacing, removing and evicting keep the total in line with the partitions
+        cache.put("a0", "1234");
+        assertEquals(7, cache.getWeightedSize());
+        cache.remove("b0");
+        assertEquals(4, cache.getWeightedSize());
+        for (int i = 0; i < 5; i++) {
+            cache.put("b" + i, "1");
+        }
+        assertEquals(4, cache.size());
+        assertEquals(7, cache.getWeightedSize());
+        assertEquals(cache.getPartitionWeightedSize(0) + cache.getPartitionWeightedSize(1),
+                cache.getWeightedSize());
+        cache.clear();
+        assertEquals(0, cache.getWeightedSize());
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testPartitionStats() {
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(TENANT, 2, 1,
+                10000);
+        cache.setRecordStats(true);
+        cache.put("a0", "v");
+        cache.put("b0", "v");
+        cache.put("b1", "v");
+        cache.get("a0");
+        cache.get("a1");
+        cache.get("b1");
+        assertEquals(1, cache.getPartitionStats(0).getHitCount());
+        assertEquals(1, cache.getPartitionStats(0).getMissCount());
+        assertEquals(1, cache.getPartitionStats(1).getHitCount());
+        assertEquals(1, cache.getPartitionStats(1).getEvictionCount(LruRemovalCause.SIZE));
+        assertEquals(2, cache.getStats().getHitCount());
+        assertEquals(1, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        try {
+            new PartitionedLruCache<String, String>(TENANT, new int[] { 1, 0 }, null, 10000, null);
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+        final PartitionedLruCache<String, String> cache = new PartitionedLruCache<String, String>(
+                new HashLruPartitioner(), 1, 10, 10000);
+        cache.put("x", "v");
+        assertEquals("v", cache.get("x"));
+        final PartitionedLruCache<String, String> invalid = new PartitionedLruCache<String, String>(
+                new InterfaceLruPartitioner<String>() {
+                    @Override
+                    public int partition(String key, int partitions) {
+                        return partitions;
+                    }
+                }, 2, 10, 10000);
+        try {
+            invalid.put("x", "v");
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.gouv.vitam.utils.UUID;
+
+@SuppressWarnings("javadoc")
+public class PrimitiveLruCacheTest {
+
+    @Test
+    public void testLongLruCache() throws InterruptedException {
+        final LongLruCache<String> cache = new LongLruCache<String>(3, 10000);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        assertEquals("1", cache.get(1));
+        cache.put(4, "4");
+        // 2 is the least recently used
+        assertNull(cache.get(2));
+        assertEquals(3, cache.size());
+        assertTrue(cache.contains(1));
+        assertEquals("3", cache.remove(3));
+        assertFalse(cache.contains(3));
+        assertEquals(2, cache.size());
+        cache.put(5, "5", 10);
+        Thread.sleep(20);
+        assertFalse(cache.contains(5));
+        assertEquals(1, cache.forceClearOldest());
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void testLongLruCacheRandom() {
+        // compares against an access ordered LinkedHashMap, with colliding keys
+        final int capacity = 100;
+        final LongLruCache<Long> cache = new LongLruCache<Long>(capacity, 100000);
+        final Map<Long, Long> reference = new LinkedHashMap<Long, Long>(16, 0.75f, true);
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final long key = random.nextInt(300) << 8;
+            final int op = random.nextInt(3);
+            if (op == 0) {
+                assertEquals(reference.get(key), cache.get(key));
+            } else if (op == 1) {
+                cache.put(key, key);
+                reference.put(key, key);
+                if (reference.size() > capacity) {
+                    final Iterator<Long> iterator = reference.keySet().iterator();
+                    iterator.next();
+                    iterator.remove();
+                }
+            } else {
+                assertEquals(reference.remove(key), cache.remove(key));
+            }
+            assertEquals(reference.size(), cache.size());
+        }
+    }
+
+    @Test
+    public void testUuidLruCache() throws Exception {
+        final UuidLruCache<String> cache = new UuidLruCache<String>(2, 10000);
+        final UUID uuid1 = new UUID();
+        final UUID uuid2 = new UUID();
+        final UUID uuid3 = new UUID();
+        cache.put(uuid1, "1");
+        cache.put(uuid2, "2");
+        assertEquals("1", cache.get(new UUID(uuid1.toString())));
+        cache.put(uuid3, "3");
+        assertNull(cache.get(uuid2));
+        assertEquals("1", cache.get(uuid1));
+        assertEquals("3", cache.get(uuid3));
+        // same most and least significant bits but different extra bits
+        final byte[] bytes = uuid1.getBytes();
+        bytes[11]++;
+        final UUID other = new UUID(bytes);
+        assertEquals(uuid1.getMostSignificantBits(), other.getMostSignificantBits());
+        assertEquals(uuid1.getLeastSignificantBits(), other.getLeastSignificantBits());
+        assertFalse(cache.contains(other));
+        assertEquals("1", cache.remove(uuid1));
+        assertEquals(1, cache.size());
+    }
+}
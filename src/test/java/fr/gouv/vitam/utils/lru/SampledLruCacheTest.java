@@ -0,0 +1,124 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class SampledLruCacheTest {
+
+    @Test
+    public void testSampledEviction() throws InterruptedException {
+        // sampling all entries gives an exact LRU (at the millisecond)
+        final SampledLruCache<String, String> cache = new SampledLruCache<String, String>(3, 10000, 1000);
+        cache.put("a", "1");
+        Thread.sleep(2);
+        cache.put("b", "2");
+        Thread.sleep(2);
+        cache.put("c", "3");
+        Thread.sleep(2);
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(2);
+        cache.put("d", "4");
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertTrue(cache.contains("a"));
+        assertEquals("3", cache.remove("c"));
+        assertFalse(cache.contains("c"));
+        cache.put("a", "5");
+        assertEquals("5", cache.get("a"));
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testTtlAndListener() throws InterruptedException {
+        final SampledLruCache<String, String> cache = new SampledLruCache<String, String>(10, 10000);
+        final AtomicInteger expired = new AtomicInteger();
+        cache.setRemovalExecutor(null);
+        cache.addRemovalListener(new InterfaceLruRemovalListener<String, String>() {
+            @Override
+            public void onRemoval(String key, String value, LruRemovalCause cause) {
+                if (cause == LruRemovalCause.EXPIRED) {
+                    expired.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            cache.put("short" + i, "v", 10);
+            cache.put("long" + i, "v");
+        }
+        Thread.sleep(20);
+        assertEquals(5, cache.forceClearOldest());
+        assertEquals(5, cache.size());
+        assertEquals(5, expired.get());
+    }
+
+    @Test
+    public void testExpireAfterAccess() throws InterruptedException {
+        final SampledLruCache<String, String> cache = new SampledLruCache<String, String>(10, 100);
+        cache.setExpiryPolicy(LruExpiryPolicy.AFTER_ACCESS);
+        cache.put("read", "1");
+        cache.put("unread", "2");
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(40);
+            assertEquals("1", cache.get("read"));
+            cache.forceClearOldest();
+        }
+        assertEquals(1, cache.size());
+        Thread.sleep(150);
+        assertEquals(1, cache.forceClearOldest());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testZipfHitRate() {
+        // the approximation stays close to the exact LRU
+        final int capacity = 1000;
+        final SynchronizedLruCache<Integer, Integer> exact = new SynchronizedLruCache<Integer, Integer>(capacity,
+                10000);
+        final SampledLruCache<Integer, Integer> sampled = new SampledLruCache<Integer, Integer>(capacity, 10000);
+        final ZipfGenerator generator = new ZipfGenerator(100000, 0.99, 42);
+        int exactHits = 0;
+        int sampledHits = 0;
+        for (int i = 0; i < 200000; i++) {
+            final Integer key = generator.next();
+            if (exact.get(key) == null) {
+                exact.put(key, key);
+            } else {
+                exactHits++;
+            }
+            if (sampled.get(key) == null) {
+                sampled.put(key, key);
+            } else {
+                sampledHits++;
+            }
+        }
+        assertEquals(capacity, sampled.size());
+        assertTrue(sampledHits > exactHits * 0.9);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.Random;
+
+/**
+ * Scan-heavy key generator: a Zipfian hot set regularly interrupted by sequential scans over cold
+ * keys never accessed again soon, which flush an LRU cache
+ */
+public class ScanKeyGenerator implements InterfaceKeyGenerator {
+    private final ZipfGenerator hot;
+
+    private final int hotItems;
+
+    private final int coldItems;
+
+    private final int scanLength;
+
+    private final double scanProbability;
+
+    private final Random random;
+
+    private int scanRemaining;
+
+    private int scanNext;
+
+    /**
+     * 
+     * @param items
+     *            number of distinct keys, the first quarter being the hot set
+     * @param scanLength
+     *            number of keys of one scan
+     * @param scanProbability
+     *            probability that an access starts a new scan
+     * @param seed
+     */
+    public ScanKeyGenerator(int items, int scanLength, double scanProbability, long seed) {
+        hotItems = Math.max(1, items / 4);
+        coldItems = Math.max(1, items - hotItems);
+        hot = new ZipfGenerator(hotItems, 0.99, seed);
+        this.scanLength = scanLength;
+        this.scanProbability = scanProbability;
+        random = new Random(seed + 1);
+    }
+
+    @Override
+    public int next() {
+        if (scanRemaining == 0 && random.nextDouble() < scanProbability) {
+            scanRemaining = scanLength;
+            scanNext = random.nextInt(coldItems);
+        }
+        if (scanRemaining > 0) {
+            scanRemaining--;
+            final int key = hotItems + scanNext;
+            scanNext = (scanNext + 1) % coldItems;
+            return key;
+        }
+        return hot.next();
+    }
+}
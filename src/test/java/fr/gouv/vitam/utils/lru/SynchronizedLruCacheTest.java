@@ -0,0 +1,378 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import fr.gouv.vitam.utils.json.JsonHandler;
+
+@SuppressWarnings("javadoc")
+public class SynchronizedLruCacheTest {
+
+    @Test
+    public void testCapacity() {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(3, 10000);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        // access a so that b becomes the eldest
+        assertEquals("A", cache.get("a"));
+        cache.put("d", "D");
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getWeightedSize());
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("a"));
+        assertEquals("A", cache.remove("a"));
+        assertEquals(2, cache.getWeightedSize());
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testTtl() throws InterruptedException {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(10, 50);
+        cache.put("a", "A");
+        cache.put("b", "B", 10000);
+        Thread.sleep(100);
+        assertEquals(1, cache.forceClearOldest());
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertEquals(1, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        final SynchronizedLruCache<String, byte[]> cache =
+                new SynchronizedLruCache<String, byte[]>(100, 10000, 1000, new DefaultLruWeigher());
+        assertEquals(1000, cache.getMaximumWeight());
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, new byte[200 - DefaultLruWeigher.OBJECT_WEIGHT]);
+        }
+        assertEquals(5, cache.size());
+        assertEquals(1000, cache.getWeightedSize());
+        // one big entry evicts the 3 eldest ones
+        cache.put("big", new byte[600 - DefaultLruWeigher.OBJECT_WEIGHT]);
+        assertEquals(3, cache.size());
+        assertEquals(1000, cache.getWeightedSize());
+        assertFalse(cache.contains("k2"));
+        assertTrue(cache.contains("k3"));
+        // replacing an entry updates the weight
+        cache.put("big", new byte[100 - DefaultLruWeigher.OBJECT_WEIGHT]);
+        assertEquals(500, cache.getWeightedSize());
+        // an entry bigger than the maximum weight is not kept
+        cache.put("huge", new byte[2000]);
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testMapWeightTracking() {
+        final CapacityLruLinkedHashMap<String, InterfaceLruCacheEntry<String>> map =
+                new CapacityLruLinkedHashMap<String, InterfaceLruCacheEntry<String>>(10, 100, 16, 0.75f);
+        final Map<String, InterfaceLruCacheEntry<String>> entries =
+                new HashMap<String, InterfaceLruCacheEntry<String>>();
+        entries.put("a", new StrongReferenceCacheEntry<String>("A", 10000, 40));
+        entries.put("b", new StrongReferenceCacheEntry<String>("B", 10000, 50));
+        map.putAll(entries);
+        assertEquals(90, map.getWeightedSize());
+        map.putAll(Collections.singletonMap("c", (InterfaceLruCacheEntry<String>)
+                new StrongReferenceCacheEntry<String>("C", 10000, 30)));
+        assertEquals(2, map.size());
+        assertTrue(map.getWeightedSize() <= 100);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testLegacyCreateEntry() {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(3, 10000) {
+            @Override
+            public void put(String key, String value, long ttl) {
+                putEntry(key, createEntry(value, ttl));
+            }
+        };
+        cache.put("a", "A");
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testJsonNodeWeigher() {
+        final DefaultLruWeigher weigher = new DefaultLruWeigher();
+        final ObjectNode small = JsonHandler.createObjectNode();
+        small.put("Title", "title");
+        final ObjectNode big = small.deepCopy();
+        big.putArray("Items").add("first").add("second").add(12);
+        assertTrue(weigher.weigh(null, small) > 0);
+        assertTrue(weigher.weigh(null, big) > weigher.weigh(null, small));
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(2, 10000);
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("b");
+        assertEquals(0, cache.getStats().getRequestCount());
+
+        cache.setRecordStats(true);
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("B", cache.get("b", new Callable<String>() {
+            @Override
+            public String call() {
+                return "B";
+            }
+        }));
+        try {
+            cache.get("c", new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new Exception("load failure");
+                }
+            });
+            fail("Should raise an exception");
+        } catch (final Exception e) {
+            // ignore
+        }
+        cache.put("c", "C");
+        LruCacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(0.25, stats.getHitRate(), 0.0001);
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertTrue(stats.getAverageLoadPenalty() > 0);
+        assertEquals(1, stats.getEvictionCount(LruRemovalCause.SIZE));
+        assertEquals(0, stats.getEvictionCount(LruRemovalCause.EXPIRED));
+
+        final ObjectName name = LruCacheJmx.register("test", cache);
+        assertEquals(Long.valueOf(1), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount"));
+        assertEquals(Integer.valueOf(2), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Size"));
+        LruCacheJmx.unregister("test");
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        cache.setRecordStats(false);
+        cache.get("a");
+        stats = cache.getStats();
+        assertEquals(0, stats.getRequestCount());
+    }
+
+    @Test
+    public void testStatsDisabledDuringLoad() throws Exception {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(2, 10000);
+        cache.setRecordStats(true);
+        // the counter read before the load is used after it
+        assertEquals("B", cache.get("b", new Callable<String>() {
+            @Override
+            public String call() {
+                cache.setRecordStats(false);
+                return "B";
+            }
+        }));
+        cache.setRecordStats(true);
+        final Map<String, String> loaded = cache.getAll(Arrays.asList("c"),
+                new InterfaceLruBatchLoader<String, String>() {
+                    @Override
+                    public Map<String, String> loadAll(Set<String> keys) {
+                        cache.setRecordStats(false);
+                        return Collections.singletonMap("c", "C");
+                    }
+                });
+        assertEquals("C", loaded.get("c"));
+    }
+
+    @Test
+    public void testBulk() throws Exception {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(10, 10000);
+        final Map<String, String> entries = new HashMap<String, String>();
+        entries.put("a", "A");
+        entries.put("b", "B");
+        cache.putAll(entries);
+        assertEquals(2, cache.size());
+        assertEquals(entries, cache.getAll(Arrays.asList("a", "b", "c")));
+
+        final AtomicInteger calls = new AtomicInteger();
+        final InterfaceLruBatchLoader<String, String> loader = new InterfaceLruBatchLoader<String, String>() {
+            @Override
+            public Map<String, String> loadAll(Set<String> keys) {
+                calls.incrementAndGet();
+                assertEquals(2, keys.size());
+                final Map<String, String> loaded = new HashMap<String, String>();
+                for (final String key : keys) {
+                    if (!key.equals("e")) {
+                        loaded.put(key, key.toUpperCase());
+                    }
+                }
+                return loaded;
+            }
+        };
+        final Map<String, String> result = cache.getAll(Arrays.asList("a", "d", "e"), loader);
+        assertEquals(1, calls.get());
+        assertEquals(2, result.size());
+        assertEquals("D", result.get("d"));
+        assertEquals("D", cache.get("d"));
+        assertFalse(cache.contains("e"));
+
+        cache.removeAll(Arrays.asList("a", "b", "e"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(10, 400);
+        final ThreadPoolExecutor executor = LruExecutors.newBoundedExecutor("refresh", 1, 10);
+        cache.setRefreshAhead(0.5f, executor);
+        final AtomicInteger loads = new AtomicInteger();
+        final Callable<String> callback = new Callable<String>() {
+            @Override
+            public String call() {
+                return "V" + loads.incrementAndGet();
+            }
+        };
+        assertEquals("V1", cache.get("a", callback));
+        // before the refresh ratio: no reload
+        assertEquals("V1", cache.get("a", callback));
+        Thread.sleep(250);
+        // after the refresh ratio: current value returned, reload in background
+        assertEquals("V1", cache.get("a", callback));
+        for (int i = 0; i < 50 && loads.get() < 2; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(20);
+        assertEquals(2, loads.get());
+        assertEquals("V2", cache.get("a"));
+        // an explicit put is not overwritten by a late refresh
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread.sleep(250);
+        cache.get("a", new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                latch.await();
+                return "late";
+            }
+        });
+        cache.put("a", "explicit");
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals("explicit", cache.get("a"));
+    }
+
+    @Test
+    public void testReferenceType() throws InterruptedException {
+        final SynchronizedLruCache<String, byte[]> cache = new SynchronizedLruCache<String, byte[]>(10, 10000);
+        cache.setRecordStats(true);
+        assertEquals(LruReferenceType.STRONG, cache.getReferenceType());
+        try {
+            cache.setReferenceType(null);
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+        cache.setReferenceType(LruReferenceType.WEAK);
+        byte[] kept = new byte[10];
+        cache.put("kept", kept);
+        cache.put("lost", new byte[1024]);
+        assertEquals(2, cache.size());
+        for (int i = 0; i < 50 && cache.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, cache.size());
+        assertNull(cache.get("lost"));
+        assertTrue(kept == cache.get("kept"));
+        assertEquals(1, cache.getStats().getEvictionCount(LruRemovalCause.COLLECTED));
+        cache.setReferenceType(LruReferenceType.SOFT);
+        cache.put("soft", new byte[10]);
+        System.gc();
+        // soft references are only cleared under memory pressure
+        assertEquals(10, cache.get("soft").length);
+    }
+
+    @Test
+    public void testRemovalListener() throws InterruptedException {
+        final SynchronizedLruCache<String, String> cache = new SynchronizedLruCache<String, String>(2, 10000);
+        final List<String> removals = new ArrayList<String>();
+        final AtomicInteger underLock = new AtomicInteger();
+        cache.setRemovalExecutor(null);
+        cache.addRemovalListener(new InterfaceLruRemovalListener<String, String>() {
+            @Override
+            public void onRemoval(String key, String value, LruRemovalCause cause) {
+                if (Thread.holdsLock(cache)) {
+                    underLock.incrementAndGet();
+                }
+                removals.add(key + "=" + value + ":" + cause);
+            }
+        });
+        cache.put("a", "1");
+        cache.put("a", "2");
+        cache.put("b", "3");
+        cache.put("c", "4");
+        cache.remove("b");
+        cache.put("d", "5", 10);
+        Thread.sleep(20);
+        assertEquals(1, cache.forceClearOldest());
+        cache.clear();
+        assertEquals(Arrays.asList("a=1:REPLACED", "a=2:SIZE", "b=3:EXPLICIT", "d=5:EXPIRED", "c=4:EXPLICIT"),
+                removals);
+        assertEquals(0, underLock.get());
+
+        // asynchronous delivery by default
+        final SynchronizedLruCache<String, String> async = new SynchronizedLruCache<String, String>(1, 10000);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        async.addRemovalListener(new InterfaceLruRemovalListener<String, String>() {
+            @Override
+            public void onRemoval(String key, String value, LruRemovalCause cause) {
+                threads.add(Thread.currentThread());
+                latch.countDown();
+            }
+        });
+        async.put("a", "1");
+        async.put("b", "2");
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(threads.get(0) == Thread.currentThread());
+    }
+}
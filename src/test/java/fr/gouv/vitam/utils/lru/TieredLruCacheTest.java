@@ -0,0 +1,197 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import fr.gouv.vitam.utils.json.JsonHandler;
+
+@SuppressWarnings("javadoc")
+public class TieredLruCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TieredLruCache<String, String> create(File directory) throws IOException {
+        return new TieredLruCache<String, String>(2, 10000, directory, 4096, 1024,
+                new StringLruCodec(), new StringLruCodec());
+    }
+
+    @Test
+    public void testSpillAndPromote() throws IOException {
+        final TieredLruCache<String, String> cache = create(folder.newFolder());
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getDiskSize());
+        // disk hit promotes to heap keeping the disk copy, evicting the eldest heap entry to disk
+        assertEquals("v0", cache.get("k0"));
+        assertEquals(2, cache.size());
+        assertEquals(4, cache.getDiskSize());
+        assertEquals("v1", cache.remove("k1"));
+        assertEquals(3, cache.getDiskSize());
+        assertNull(cache.get("k1"));
+        // a new value replaces the disk copy
+        cache.put("k2", "new");
+        assertEquals("new", cache.get("k2"));
+        cache.clear();
+        assertEquals(0, cache.getDiskSize());
+        assertNull(cache.get("k3"));
+        cache.close();
+    }
+
+    @Test
+    public void testPromotionWithoutWrite() throws IOException {
+        final TieredLruCache<String, String> cache = new TieredLruCache<String, String>(1, 10000,
+                folder.newFolder(), 4096, 1024, new StringLruCodec(), new StringLruCodec());
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.get("a"));
+        final long bytes = cache.getDiskBytes();
+        // the unchanged promoted entries are not written again
+        for (int i = 0; i < 10; i++) {
+            assertEquals("B", cache.get("b"));
+            assertEquals("A", cache.get("a"));
+        }
+        assertEquals(bytes, cache.getDiskBytes());
+        // but internal lookups do not promote
+        cache.updateTtl("b");
+        assertEquals(1, cache.size());
+        cache.close();
+        cache.close();
+        try {
+            cache.get("a");
+            fail("Should raise an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // ignore
+        }
+        try {
+            cache.put("c", "C");
+            fail("Should raise an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testRefreshOfPromotedEntry() throws IOException {
+        final TieredLruCache<String, String> cache = new TieredLruCache<String, String>(1, 10000,
+                folder.newFolder(), 4096, 1024, new StringLruCodec(), new StringLruCodec());
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.get("a"));
+        // a refresh right after the promotion must be written at eviction
+        assertTrue(cache.replaceValue("a", cache.getEntry("a"), "A2", 10000));
+        assertEquals("B", cache.get("b"));
+        assertEquals("A2", cache.get("a"));
+        cache.close();
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        final File directory = folder.newFolder();
+        TieredLruCache<String, String> cache = create(directory);
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, "v" + i);
+        }
+        cache.remove("k0");
+        cache.close();
+        // simulate a crash during a write
+        final File[] segments = directory.listFiles();
+        final FileOutputStream out = new FileOutputStream(segments[segments.length - 1], true);
+        out.write(new byte[] { 0, 0, 0, 5, 0, 0 });
+        out.close();
+
+        cache = create(directory);
+        assertEquals(0, cache.size());
+        assertEquals(4, cache.getDiskSize());
+        assertNull(cache.get("k0"));
+        for (int i = 1; i < 5; i++) {
+            assertEquals("v" + i, cache.get("k" + i));
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testBoundedDisk() throws IOException {
+        final TieredLruCache<String, String> cache = create(folder.newFolder());
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append('x');
+        }
+        final AtomicInteger refused = new AtomicInteger();
+        cache.setRemovalExecutor(null);
+        cache.addRemovalListener(new InterfaceLruRemovalListener<String, String>() {
+            @Override
+            public void onRemoval(String key, String value, LruRemovalCause cause) {
+                assertEquals(LruRemovalCause.SIZE, cause);
+                refused.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 200; i++) {
+            cache.put("k" + i, builder.toString() + i);
+        }
+        assertTrue(cache.getDiskBytes() <= 4096);
+        // live entries are never dropped, new ones are refused once the disk tier is full
+        assertTrue(refused.get() > 0);
+        assertEquals(200, cache.size() + cache.getDiskSize() + refused.get());
+        assertEquals(builder.toString() + 0, cache.get("k0"));
+        assertEquals(builder.toString() + 199, cache.get("k199"));
+        // removals leave room to the next spills, through compaction
+        for (int i = 1; i < 20; i++) {
+            cache.remove("k" + i);
+        }
+        final int diskSize = cache.getDiskSize();
+        cache.put("new", "value");
+        cache.put("other", "value");
+        // promoted k0 is still on disk, k199 is spilled
+        assertEquals(diskSize + 1, cache.getDiskSize());
+        assertEquals(builder.toString() + 199, cache.get("k199"));
+        assertTrue(cache.getDiskBytes() <= 4096);
+        cache.close();
+    }
+
+    @Test
+    public void testJsonCodec() throws Exception {
+        final TieredLruCache<String, JsonNode> cache = new TieredLruCache<String, JsonNode>(1, 10000,
+                folder.newFolder(), 4096, 1024, new StringLruCodec(), new JsonLruCodec());
+        final ObjectNode node = JsonHandler.createObjectNode();
+        node.put("Title", "Archive");
+        cache.put("a", node);
+        cache.put("b", JsonHandler.createObjectNode());
+        assertEquals(1, cache.getDiskSize());
+        assertEquals(node, cache.get("a"));
+        cache.close();
+    }
+}
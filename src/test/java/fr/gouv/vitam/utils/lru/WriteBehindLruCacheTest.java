@@ -0,0 +1,226 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class WriteBehindLruCacheTest {
+    private static class RecordingWriter implements InterfaceLruBatchWriter<String, Integer> {
+        private final List<Map<String, Integer>> batches =
+                Collections.synchronizedList(new ArrayList<Map<String, Integer>>());
+
+        private volatile boolean failing;
+
+        private volatile CountDownLatch written = new CountDownLatch(0);
+
+        private volatile CountDownLatch started = new CountDownLatch(0);
+
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+
+        @Override
+        public void writeAll(Map<String, Integer> entries) throws Exception {
+            started.countDown();
+            blocked.await();
+            if (failing) {
+                throw new Exception("store unavailable");
+            }
+            batches.add(new LinkedHashMap<String, Integer>(entries));
+            written.countDown();
+        }
+    }
+
+    @Test
+    public void testCoalescedFlush() throws Exception {
+        final RecordingWriter writer = new RecordingWriter();
+        final WriteBehindLruCache<String, Integer> cache =
+                new WriteBehindLruCache<String, Integer>(10, 10000, writer, 1000, 100000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("a", i);
+            cache.put("b", -i);
+        }
+        assertEquals(99, cache.get("a").intValue());
+        assertEquals(2, cache.getDirtyCount());
+        assertEquals(0, writer.batches.size());
+        assertEquals(2, cache.flush());
+        assertEquals(1, writer.batches.size());
+        assertEquals(99, writer.batches.get(0).get("a").intValue());
+        assertEquals(-99, writer.batches.get(0).get("b").intValue());
+        assertEquals(0, cache.flush());
+        // loaded values are not dirty
+        cache.get("c", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 3;
+            }
+        });
+        assertEquals(0, cache.getDirtyCount());
+        // failed flush keeps entries dirty, newer values win
+        writer.failing = true;
+        cache.put("a", 100);
+        try {
+            cache.flush();
+            fail("Should raise an Exception");
+        } catch (final Exception e) {
+            // ignore
+        }
+        cache.put("a", 101);
+        assertEquals(1, cache.getDirtyCount());
+        writer.failing = false;
+        cache.close();
+        assertEquals(101, writer.batches.get(1).get("a").intValue());
+    }
+
+    @Test
+    public void testTriggersAndEviction() throws Exception {
+        final RecordingWriter writer = new RecordingWriter();
+        final WriteBehindLruCache<String, Integer> cache =
+                new WriteBehindLruCache<String, Integer>(2, 10000, writer, 3, 50);
+        writer.written = new CountDownLatch(1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // "a" evicted while dirty remains readable
+        assertEquals(2, cache.size());
+        assertTrue(writer.written.await(10, TimeUnit.SECONDS));
+        assertEquals(0, cache.getDirtyCount());
+        int written = 0;
+        synchronized (writer.batches) {
+            for (final Map<String, Integer> batch : writer.batches) {
+                written += batch.size();
+            }
+        }
+        assertEquals(3, written);
+        // time trigger
+        writer.written = new CountDownLatch(1);
+        cache.put("d", 4);
+        assertTrue(writer.written.await(10, TimeUnit.SECONDS));
+        assertEquals(0, cache.getDirtyCount());
+        cache.close();
+    }
+
+    @Test
+    public void testEvictedDirtyReadable() throws Exception {
+        final RecordingWriter writer = new RecordingWriter();
+        writer.failing = true;
+        final WriteBehindLruCache<String, Integer> cache =
+                new WriteBehindLruCache<String, Integer>(1, 10000, writer, 1000, 100000);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(1, cache.get("a").intValue());
+        assertTrue(cache.contains("b"));
+        writer.failing = false;
+        assertEquals(2, cache.flush());
+        cache.remove("b");
+        assertNull(cache.get("a"));
+        cache.close();
+    }
+
+    @Test
+    public void testEvictionDuringFlush() throws Exception {
+        final RecordingWriter writer = new RecordingWriter();
+        final WriteBehindLruCache<String, Integer> cache =
+                new WriteBehindLruCache<String, Integer>(1, 10000, writer, 1000, 100000);
+        final List<String> removals = Collections.synchronizedList(new ArrayList<String>());
+        cache.setRemovalExecutor(null);
+        cache.addRemovalListener(new InterfaceLruRemovalListener<String, Integer>() {
+            @Override
+            public void onRemoval(String key, Integer value, LruRemovalCause cause) {
+                removals.add(key + "=" + value + ":" + cause);
+            }
+        });
+        cache.put("a", 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        writer.started = new CountDownLatch(1);
+        writer.blocked = release;
+        final Thread flushing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.flush();
+                } catch (final Exception e) {
+                    // checked below
+                }
+            }
+        });
+        flushing.start();
+        assertTrue(writer.started.await(10, TimeUnit.SECONDS));
+        // "a" is being written: its eviction keeps it readable
+        cache.put("b", 2);
+        assertEquals(1, cache.get("a").intValue());
+        assertTrue(removals.isEmpty());
+        release.countDown();
+        flushing.join();
+        assertEquals(Arrays.asList("a=1:SIZE"), removals);
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.get("b").intValue());
+        cache.close();
+    }
+
+    @Test
+    public void testMaximumDirty() throws Exception {
+        final RecordingWriter writer = new RecordingWriter();
+        final WriteBehindLruCache<String, Integer> cache =
+                new WriteBehindLruCache<String, Integer>(2, 10000, writer, 1000, 100000, 3);
+        assertEquals(3, cache.getMaximumDirty());
+        writer.failing = true;
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // coalesced writes do not need room
+        cache.put("c", 4);
+        try {
+            cache.put("d", 5);
+            fail("Should raise an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // ignore
+        }
+        assertNull(cache.get("d"));
+        assertEquals(3, cache.getDirtyCount());
+        // the put flushes by itself once the writer is back
+        writer.failing = false;
+        cache.put("d", 5);
+        assertEquals(1, cache.getDirtyCount());
+        // evicted "a" is written, so gone
+        assertNull(cache.get("a"));
+        cache.close();
+        assertEquals(4, cache.get("c").intValue());
+        try {
+            new WriteBehindLruCache<String, Integer>(2, 10000, writer, 2, 100000, 0);
+            fail("Should raise an IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            // ignore
+        }
+    }
+}
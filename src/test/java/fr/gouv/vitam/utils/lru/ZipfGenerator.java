@@ -0,0 +1,78 @@
+/**
+ * This file is part of Vitam Project.
+ * 
+ * Copyright 2009, Frederic Bregier, and individual contributors by the @author tags. See the
+ * COPYRIGHT.txt in the distribution for a full listing of individual contributors.
+ * 
+ * All Vitam Project is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ * 
+ * Vitam is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with Vitam . If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package fr.gouv.vitam.utils.lru;
+
+import java.util.Random;
+
+/**
+ * Zipfian key generator (Gray et al. "Quickly generating billion-record synthetic databases"),
+ * 0 being the most popular key
+ */
+public class ZipfGenerator implements InterfaceKeyGenerator {
+    private final int items;
+
+    private final double theta;
+
+    private final double alpha;
+
+    private final double zetan;
+
+    private final double eta;
+
+    private final Random random;
+
+    /**
+     * 
+     * @param items
+     *            number of distinct keys
+     * @param theta
+     *            skew (0.99 for the usual workloads)
+     * @param seed
+     */
+    public ZipfGenerator(int items, double theta, long seed) {
+        this.items = items;
+        this.theta = theta;
+        random = new Random(seed);
+        final double zeta2 = zeta(2, theta);
+        alpha = 1.0 / (1.0 - theta);
+        zetan = zeta(items, theta);
+        eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    @Override
+    public int next() {
+        final double u = random.nextDouble();
+        final double uz = u * zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+}